@@ -0,0 +1,178 @@
+// This class compresses a stream in a single pass with adaptive Huffman coding.
+// Both sides start from the same counts (one for every character), code each
+// character with the current tree, add it to the counts, and rebuild the tree
+// after every fixed number of characters (sooner at the start, where the gaps
+// between rebuilds double up to that number). Since the decoder sees the same
+// characters in the same order, it rebuilds exactly the same trees, so no tree
+// has to be written and no input has to be read twice.
+
+import java.io.*;
+import java.util.function.*;
+
+public class AdaptiveHuffman {
+   private int interval;     // number of characters coded between rebuilds of the tree
+
+   public static final int DEFAULT_INTERVAL = 16 * 1024;
+   public static final int CHARACTERS = 256;
+
+   // the counts are halved when their total goes over this limit, so that memory
+   // stays bounded and the tree follows recent input more than old input
+   private static final int MAX_TOTAL = 1 << 24;
+   private static final int BUFFER_SIZE = 8 * 1024;
+
+   // post: constructs a codec that rebuilds its tree every DEFAULT_INTERVAL characters
+   public AdaptiveHuffman() {
+      this(DEFAULT_INTERVAL);
+   }
+
+   // pre : interval >= 1 (throws an IllegalArgumentException if not)
+   // post: constructs a codec that rebuilds its tree every interval characters
+   //       (once the gaps between rebuilds have grown to it)
+   public AdaptiveHuffman(int interval) {
+      if (interval < 1) {
+         throw new IllegalArgumentException("interval: " + interval);
+      }
+      this.interval = interval;
+   }
+
+   // pre : nothing has been written to the output, or a whole number of bytes
+   // post: reads the given input until its end, compressing each chunk as soon as
+   //       it arrives, and writes the codes followed by the pseudo-eof to the output,
+   //       padded with 0 bits to a whole byte so that every byte reaches the stream
+   //       under the output; the output is left open for the caller to close
+   public void compress(InputStream input, BitOutputStream output) throws IOException {
+      compress(input, output, null);
+   }
+
+   // post: compresses the given input as above, but flushes every whole byte of codes
+   //       to the output as soon as the chunk it codes has arrived, so that a decoder
+   //       reading the output can keep up with the input; the output is padded to a
+   //       whole byte and flushed at the end, and left open for the caller to close
+   public void compress(InputStream input, FastBitOutputStream output) throws IOException {
+      compress(input, null, output);
+   }
+
+   // pre : exactly one of bits and fast is not null
+   // post: compresses the given input to bits, or to fast (flushing it after every
+   //       chunk), and pads the output to a whole byte without closing it
+   private void compress(InputStream input, BitOutputStream bits, FastBitOutputStream fast)
+         throws IOException {
+      long written = 0;  // bits written to the output
+      int[] count = initialCounts();
+      CanonicalCode code = build(count);
+      byte[] buffer = new byte[BUFFER_SIZE];
+      int sinceRebuild = 0;
+      int limit = 1;     // number of characters until the next rebuild
+      int n = input.read(buffer);
+      while (n >= 0) {
+         for (int i = 0; i < n; i++) {
+            int character = buffer[i] & 0xff;
+            written += write(code, character, bits, fast);
+            count[character]++;
+            sinceRebuild++;
+            if (sinceRebuild == limit) {
+               code = build(count);
+               sinceRebuild = 0;
+               limit = Math.min(2 * limit, interval);
+            }
+         }
+         if (fast != null) {
+            fast.flush();
+         }
+         n = input.read(buffer);
+      }
+      written += write(code, CHARACTERS, bits, fast);
+      // the decoder stops at the pseudo-eof, so the padding is never read
+      for (; written % 8 != 0; written++) {
+         if (fast != null) {
+            fast.writeBit(0);
+         } else {
+            bits.writeBit(0);
+         }
+      }
+      if (fast != null) {
+         fast.flush();
+      }
+   }
+
+   // pre : input contains the output of compress with the same interval
+   // post: decodes the given input up to the pseudo-eof and writes the characters
+   //       to the given output, flushing it every time the tree is rebuilt
+   public void decompress(BitInputStream input, OutputStream output) throws IOException {
+      decompress(input::readBit, output);
+   }
+
+   // pre : input contains the output of compress with the same interval
+   // post: decodes the given input as above, reading it a word at a time
+   public void decompress(FastBitInputStream input, OutputStream output) throws IOException {
+      decompress(input::readBit, output);
+   }
+
+   // pre : bits supplies the output of compress with the same interval, one bit at a
+   //       time
+   // post: decodes the given bits as decompress does
+   private void decompress(IntSupplier input, OutputStream output) throws IOException {
+      int[] count = initialCounts();
+      CanonicalCode code = build(count);
+      byte[] buffer = new byte[interval];
+      int sinceRebuild = 0;
+      int limit = 1;     // number of characters until the next rebuild
+      int character = code.decodeSymbol(input);
+      while (character != CHARACTERS) {
+         buffer[sinceRebuild] = (byte) character;
+         count[character]++;
+         sinceRebuild++;
+         if (sinceRebuild == limit) {
+            output.write(buffer, 0, sinceRebuild);
+            output.flush();
+            code = build(count);
+            sinceRebuild = 0;
+            limit = Math.min(2 * limit, interval);
+         }
+         character = code.decodeSymbol(input);
+      }
+      output.write(buffer, 0, sinceRebuild);
+      output.flush();
+   }
+
+   // post: returns the counts both sides start from
+   private static int[] initialCounts() {
+      int[] count = new int[CHARACTERS];
+      for (int i = 0; i < CHARACTERS; i++) {
+         count[i] = 1;
+      }
+      return count;
+   }
+
+   // post: halves the given counts if their total is over the limit (keeping every
+   //       count at least 1) and returns the canonical code of their Huffman tree
+   private static CanonicalCode build(int[] count) {
+      long total = 0;
+      for (int c : count) {
+         total += c;
+      }
+      if (total > MAX_TOTAL) {
+         for (int i = 0; i < CHARACTERS; i++) {
+            count[i] = (count[i] + 1) / 2;
+         }
+      }
+      return new HuffmanTree2(count, true).canonicalCode();
+   }
+
+   // post: writes the code of the given character, first bit first, to bits if it is
+   //       not null and to fast otherwise, and returns its length
+   private static int write(CanonicalCode code, int character, BitOutputStream bits,
+                            FastBitOutputStream fast) {
+      long value = code.code(character);
+      int length = code.length(character);
+      if (fast != null) {
+         // the fast stream writes the lowest bit first
+         fast.writeBits(Long.reverse(value) >>> (64 - length), length);
+      } else {
+         for (int i = length - 1; i >= 0; i--) {
+            bits.writeBit((int) (value >>> i & 1));
+         }
+      }
+      return length;
+   }
+}
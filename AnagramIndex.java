@@ -0,0 +1,248 @@
+// This class is an index of an anagram dictionary that is built once, saved to a
+// file and then opened by mapping the file into memory, so that a solver can start
+// without reading the word list or creating an object for every word. The words are
+// grouped by signature (their letters in sorted order, which all anagrams of each
+// other share), and the index holds:
+//
+//    vectors  : the letter counts of each group, packed as in PackedInventory
+//    sizes    : the number of letters of each group
+//    groups   : the words of each group, in dictionary order, and the group of each word
+//    postings : for each letter, the groups that use that letter
+//    words    : the characters of each word (UTF-8)
+//
+// A phrase can only use a group if it has every letter of the group, so pruning
+// the dictionary for a phrase skips the postings of the letters the phrase lacks
+// and compares only the remaining vectors.
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+
+public class AnagramIndex {
+   private ByteBuffer buffer;        // the whole index
+   private int wordCount;            // number of words
+   private int groupCount;           // number of signature groups
+   private LongBuffer vectors;       // letter counts of each group
+   private IntBuffer sizes;          // number of letters of each group
+   private IntBuffer groupStart;     // position in members of the first word of each group
+   private IntBuffer members;        // word numbers of each group, one group after another
+   private IntBuffer wordGroup;      // group of each word
+   private IntBuffer postingStart;   // position in postings of the first group of each letter
+   private IntBuffer postings;       // group numbers using each letter, one letter after another
+   private IntBuffer wordStart;      // position in the characters of each word
+   private ByteBuffer characters;    // characters of all of the words
+
+   public static final int MAGIC = 0x414e4749;   // "ANGI"
+   public static final int VERSION = 1;
+
+   private static final int HEADER_SIZE = 32;
+   private static final int ALPHABET_NUM = PackedInventory.ALPHABET_NUM;
+
+   // pre : buffer holds an index as written by save
+   //       (throws an IllegalArgumentException if it does not start like one)
+   // post: constructs an index reading the given buffer
+   private AnagramIndex(ByteBuffer buffer) {
+      this.buffer = buffer;
+      if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+         throw new IllegalArgumentException("not an anagram index");
+      }
+      wordCount = buffer.getInt(8);
+      groupCount = buffer.getInt(12);
+      int postingCount = buffer.getInt(16);
+      int characterCount = buffer.getInt(20);
+      int position = HEADER_SIZE;
+      vectors = slice(position, 8L * groupCount * PackedInventory.LONGS).asLongBuffer();
+      position += 8 * groupCount * PackedInventory.LONGS;
+      sizes = slice(position, 4L * groupCount).asIntBuffer();
+      position += 4 * groupCount;
+      groupStart = slice(position, 4L * (groupCount + 1)).asIntBuffer();
+      position += 4 * (groupCount + 1);
+      members = slice(position, 4L * wordCount).asIntBuffer();
+      position += 4 * wordCount;
+      wordGroup = slice(position, 4L * wordCount).asIntBuffer();
+      position += 4 * wordCount;
+      postingStart = slice(position, 4L * (ALPHABET_NUM + 1)).asIntBuffer();
+      position += 4 * (ALPHABET_NUM + 1);
+      postings = slice(position, 4L * postingCount).asIntBuffer();
+      position += 4 * postingCount;
+      wordStart = slice(position, 4L * (wordCount + 1)).asIntBuffer();
+      position += 4 * (wordCount + 1);
+      characters = slice(position, characterCount);
+   }
+
+   // pre : list contains no duplicates and no letter occurs in a word more than
+   //       PackedInventory.MAX_COUNT times (throws an IllegalArgumentException if not)
+   // post: builds and returns an index of the given words, kept in memory
+   public static AnagramIndex build(List<String> list) {
+      // groups the words by signature, in order of first appearance
+      Map<String, List<Integer>> groups = new LinkedHashMap<>();
+      List<PackedInventory> letters = new ArrayList<>();
+      for (int i = 0; i < list.size(); i++) {
+         PackedInventory inventory = new PackedInventory(list.get(i));
+         String signature = inventory.toString();
+         if (!groups.containsKey(signature)) {
+            groups.put(signature, new ArrayList<>());
+            letters.add(inventory);
+         }
+         groups.get(signature).add(i);
+      }
+      int postingCount = 0;
+      List<List<Integer>> letterGroups = new ArrayList<>();
+      for (int i = 0; i < ALPHABET_NUM; i++) {
+         letterGroups.add(new ArrayList<>());
+      }
+      for (int group = 0; group < letters.size(); group++) {
+         for (int i = 0; i < ALPHABET_NUM; i++) {
+            if (letters.get(group).get((char) ('a' + i)) > 0) {
+               letterGroups.get(i).add(group);
+               postingCount++;
+            }
+         }
+      }
+      byte[][] encoded = new byte[list.size()][];
+      int characterCount = 0;
+      for (int i = 0; i < list.size(); i++) {
+         encoded[i] = list.get(i).getBytes(StandardCharsets.UTF_8);
+         characterCount += encoded[i].length;
+      }
+
+      int groupCount = letters.size();
+      long total = HEADER_SIZE + 8L * groupCount * PackedInventory.LONGS
+                 + 4L * (groupCount + groupCount + 1 + 2 * list.size() + ALPHABET_NUM + 1
+                         + postingCount + list.size() + 1)
+                 + characterCount;
+      if (total > Integer.MAX_VALUE) {
+         throw new IllegalArgumentException("index too large: " + total);
+      }
+      ByteBuffer buffer = ByteBuffer.allocate((int) total);
+      buffer.putInt(MAGIC).putInt(VERSION).putInt(list.size()).putInt(groupCount)
+            .putInt(postingCount).putInt(characterCount);
+      buffer.position(HEADER_SIZE);
+      LongBuffer vectors = buffer.asLongBuffer();
+      for (int group = 0; group < groupCount; group++) {
+         letters.get(group).put(vectors, group * PackedInventory.LONGS);
+      }
+      buffer.position(buffer.position() + 8 * groupCount * PackedInventory.LONGS);
+      for (PackedInventory inventory : letters) {
+         buffer.putInt(inventory.size());
+      }
+      int start = 0;
+      for (List<Integer> group : groups.values()) {
+         buffer.putInt(start);
+         start += group.size();
+      }
+      buffer.putInt(start);
+      int[] wordGroup = new int[list.size()];
+      int number = 0;
+      for (List<Integer> group : groups.values()) {
+         for (int word : group) {
+            buffer.putInt(word);
+            wordGroup[word] = number;
+         }
+         number++;
+      }
+      for (int group : wordGroup) {
+         buffer.putInt(group);
+      }
+      start = 0;
+      for (List<Integer> posting : letterGroups) {
+         buffer.putInt(start);
+         start += posting.size();
+      }
+      buffer.putInt(start);
+      for (List<Integer> posting : letterGroups) {
+         for (int group : posting) {
+            buffer.putInt(group);
+         }
+      }
+      start = 0;
+      for (byte[] word : encoded) {
+         buffer.putInt(start);
+         start += word.length;
+      }
+      buffer.putInt(start);
+      for (byte[] word : encoded) {
+         buffer.put(word);
+      }
+      buffer.clear();
+      return new AnagramIndex(buffer);
+   }
+
+   // pre : the file holds an index written by save
+   //       (throws an IllegalArgumentException if it does not start like one)
+   // post: opens the index in the given file by mapping it into memory
+   public static AnagramIndex open(String file) throws IOException {
+      try (FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.READ)) {
+         return new AnagramIndex(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+      }
+   }
+
+   // post: writes this index to the given file
+   public void save(String file) throws IOException {
+      try (FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.CREATE,
+                                                  StandardOpenOption.WRITE,
+                                                  StandardOpenOption.TRUNCATE_EXISTING)) {
+         ByteBuffer data = buffer.duplicate();
+         data.clear();
+         while (data.hasRemaining()) {
+            channel.write(data);
+         }
+      }
+   }
+
+   // post: returns the number of words in the index
+   public int size() {
+      return wordCount;
+   }
+
+   // pre : 0 <= word < size()
+   // post: returns the given word
+   public String word(int word) {
+      int start = wordStart.get(word);
+      byte[] bytes = new byte[wordStart.get(word + 1) - start];
+      characters.get(start, bytes);
+      return new String(bytes, StandardCharsets.UTF_8);
+   }
+
+   // post: returns the numbers (in dictionary order) of the words that can be
+   //       subtracted from the given inventory
+   public int[] prune(PackedInventory rest) {
+      // a group is skipped if it uses a letter that rest lacks
+      boolean[] skipped = new boolean[groupCount];
+      for (int i = 0; i < ALPHABET_NUM; i++) {
+         if (rest.get((char) ('a' + i)) == 0) {
+            for (int j = postingStart.get(i); j < postingStart.get(i + 1); j++) {
+               skipped[postings.get(j)] = true;
+            }
+         }
+      }
+      int[] result = new int[wordCount];
+      int size = 0;
+      for (int group = 0; group < groupCount; group++) {
+         if (!skipped[group] && rest.contains(vectors, group * PackedInventory.LONGS)) {
+            for (int j = groupStart.get(group); j < groupStart.get(group + 1); j++) {
+               result[size] = members.get(j);
+               size++;
+            }
+         }
+      }
+      result = Arrays.copyOf(result, size);
+      Arrays.sort(result);
+      return result;
+   }
+
+   // pre : 0 <= word < size()
+   // post: returns the letter inventory of the given word
+   public PackedInventory letters(int word) {
+      int group = wordGroup.get(word);
+      return new PackedInventory(vectors, group * PackedInventory.LONGS, sizes.get(group));
+   }
+
+   // post: returns the bytes of the index from the given position with the given length
+   private ByteBuffer slice(int position, long length) {
+      return buffer.slice(position, (int) length);
+   }
+}
@@ -1,11 +1,38 @@
 // This class uses a dictionary to find all combinations of words
 //    that hace the same letters as a given phrase.
+//    The search can also run in parallel on a ForkJoinPool: the words
+//    tried on a level are split in halves into tasks until few are left,
+//    subtrees with many letters left are split again, and work stealing
+//    balances the subtrees, which differ a lot in size.
+//    The dictionary is kept in an AnagramIndex, which can be saved to
+//    a file and opened again without reading the word list.
+//    Different orders of words leave the same letters to be used, so the
+//    search remembers, for the remaining letters and number of words,
+//    which words lead to solutions (none for a dead end). A subtree seen
+//    before then follows only those words. The memo is a bounded LRU
+//    cache, so an evicted subtree is only searched again, and one memo is
+//    shared by all of the tasks of a parallel search.
+//    Another search finds each combination only once as a multiset of
+//    words: it always branches on the remaining letter that the fewest
+//    fitting words contain, and then lists the orders of the words.
 
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
+import java.util.stream.*;
 
 public class AnagramSolver {
-   private List<String> dictionary;                           // list of words which can be used in anagram
-   private Map<String, LetterInventory> letterstock;          // letter inventory of each word
+   private AnagramIndex index;                                // words which can be used in anagram, with their letters
+   private int memoSize;                                      // largest number of remembered subtrees
+   private Memo lastMemo;                                     // memo of the last search (null if none)
+   
+   public static final int DEFAULT_MEMO_SIZE = 1 << 16;
+   
+   private static final int SPLIT_WORDS = 8;          // most words tried by a task without splitting
+   private static final int SPLIT_LETTERS = 8;        // fewest letters left in a subtree split into tasks
+   private static final int FLUSH_SIZE = 1 << 16;     // characters of unordered output printed at once
+   private static final int MEMO_STRIPES = 16;        // parts of the memo locked on their own
    
    // pre : list is a nonempty collection of nonempty sequences of letters, contains no duplicates and
    //       doesn't change in state as the program executes (output may be confusing otherwise)
@@ -13,14 +40,36 @@ public class AnagramSolver {
    //       ignores the case of the letters
    // post: constructs an anagram solver that will use the given list in given order as its dictionary;
    public AnagramSolver(List<String> list) {
-      dictionary = list;
-      letterstock = new HashMap<>();
-      for (String word : list) {
-         letterstock.put(word, new LetterInventory(word));
+      this(AnagramIndex.build(list));
+   }
+   
+   // post: constructs an anagram solver that will use the words of the given index
+   //       in their order as its dictionary
+   public AnagramSolver(AnagramIndex index) {
+      this.index = index;
+      memoSize = DEFAULT_MEMO_SIZE;
+   }
+   
+   // pre : size >= 0 (throws IllegalArgumentException otherwise)
+   // post: makes every later search remember at most the given number of subtrees
+   //       (each takes about 100 bytes plus 4 bytes for each word leading to a
+   //       solution); 0 turns remembering off
+   public void setMemoSize(int size) {
+      if (size < 0) {
+         throw new IllegalArgumentException("size: " + size);
       }
+      memoSize = size;
+   }
+   
+   // post: returns the fraction of the subtrees looked up in the memo by the last
+   //       search started that were remembered (0 if no search has looked one up)
+   public double memoHitRate() {
+      Memo memo = lastMemo;
+      return memo == null ? 0 : memo.hitRate();
    }
    
-   // pre : max >= 0 (throws IllegalArgumentException otherwise)
+   // pre : max >= 0 and no letter occurs in s more than PackedInventory.MAX_COUNT times
+   //       (throws IllegalArgumentException otherwise)
    //       s shoud not be empty (prints nothing if it is empty)
    //       ignoring the case of letters of s and ignoring any non-alphabetic characters
    // post: finds and prints combinations of words that have the same letters as the given string
@@ -29,46 +78,660 @@ public class AnagramSolver {
    //       words are in square brackets and separated by comma;
    //       prints nothing if no legal anagrams exists
    public void print(String s, int max) {
+      solutions(s, max).forEach(System.out::println);
+   }
+   
+   // pre : max >= 0 and no letter occurs in s more than PackedInventory.MAX_COUNT times
+   //       (throws IllegalArgumentException otherwise)
+   // post: returns a stream of the combinations that print(s, max) prints, in the same
+   //       order; the search runs only as far as the stream is consumed, so that
+   //       findFirst or limit(n) stop it after the first n solutions
+   public Stream<List<String>> solutions(String s, int max) {
       if (max < 0) {
          throw new IllegalArgumentException();
       }
-      LetterInventory rest = new LetterInventory(s);
-      List<String> dict = prune(rest);
-      print(rest, max, dict, new Stack<>());
+      PackedInventory rest = new PackedInventory(s);
+      Candidates dict = prune(rest);
+      return StreamSupport.stream(new Solutions(rest, max, dict, new ArrayList<>(), newMemo()),
+                                  false);
    }
    
-   // post: finds and prints combinations of words that have the same letters as the given letter inventory
-   //       including at most max words (or unlimited number of words if max is 0);
-   //       the solutions and the words are printed in given order and given cases of the dictionary;
-   //       words are in square brackets and separated by comma;
-   //       prints nothing if no legal anagrams exists
-   private void print(LetterInventory rest, int max, 
-                        List<String> dict, Stack<String> sofar) {
-      if (max == 0 || sofar.size() <= max) {
-         if (rest.size() == 0) {
-            System.out.println(sofar);
-         } else {
-            for (String word : dict) {
-               LetterInventory letters = rest.subtract(letterstock.get(word));
-               if (letters != null) {
-                  sofar.push(word);
-                  print(letters, max, dict, sofar);
-                  sofar.pop();
+   // pre : max >= 0 and no letter occurs in s more than PackedInventory.MAX_COUNT times
+   //       (throws IllegalArgumentException otherwise)
+   // post: returns a stream of the combinations that print(s, max) prints, found by
+   //       first finding every set of words (with repeats) that uses the letters of s
+   //       exactly once, branching on the rarest remaining letter, and then listing
+   //       the orders of the words of each set; if ordered is true, the combinations
+   //       are in the same order as print(s, max), otherwise the orders of one set
+   //       follow each other; the sets are found before the stream starts
+   public Stream<List<String>> solutions(String s, int max, boolean ordered) {
+      if (max < 0) {
+         throw new IllegalArgumentException();
+      }
+      PackedInventory rest = new PackedInventory(s);
+      Candidates dict = prune(rest);
+      List<int[]> sets = new LetterSearch(rest, max, dict).sets();
+      Stream<int[]> orders;
+      if (ordered) {
+         orders = StreamSupport.stream(new MergedOrders(sets), false);
+      } else {
+         orders = sets.stream().flatMap(set ->
+            Stream.iterate(set, Objects::nonNull, AnagramSolver::nextOrder));
+      }
+      return orders.map(order -> {
+         List<String> solution = new ArrayList<>(order.length);
+         for (int word : order) {
+            solution.add(dict.words[word]);
+         }
+         return solution;
+      });
+   }
+   
+   // pre : order is sorted or was returned by nextOrder
+   // post: returns the next order of the same words in lexicographic order of the
+   //       positions (null if order is the last one); order is not changed
+   private static int[] nextOrder(int[] order) {
+      int i = order.length - 2;
+      while (i >= 0 && order[i] >= order[i + 1]) {
+         i--;
+      }
+      if (i < 0) {
+         return null;
+      }
+      int[] result = order.clone();
+      int j = result.length - 1;
+      while (result[j] <= result[i]) {
+         j--;
+      }
+      int swap = result[i];
+      result[i] = result[j];
+      result[j] = swap;
+      Arrays.sort(result, i + 1, result.length);
+      return result;
+   }
+   
+   // pre : max >= 0 and no letter occurs in s more than PackedInventory.MAX_COUNT times
+   //       (throws IllegalArgumentException otherwise)
+   // post: prints the same combinations as print(s, max), but searches in parallel on
+   //       the given pool; if ordered is true, the solutions are collected and printed
+   //       in the same order as print(s, max) when the search ends, otherwise they
+   //       are printed in any order as soon as possible
+   public void print(String s, int max, ForkJoinPool pool, boolean ordered) {
+      if (max < 0) {
+         throw new IllegalArgumentException();
+      }
+      PackedInventory rest = new PackedInventory(s);
+      Candidates dict = prune(rest);
+      StringBuilder output = pool.invoke(new SearchTask(rest, max, dict, newMemo(), ordered));
+      System.out.print(output);
+      System.out.flush();
+   }
+   
+   // post: returns a memo for a new search (null if remembering is off), which
+   //       memoHitRate reports on
+   private Memo newMemo() {
+      Memo memo = memoSize == 0 ? null : new Memo(memoSize);
+      lastMemo = memo;
+      return memo;
+   }
+   
+   // post: reduces and returns the relevant words (in dictionary order) which can be
+   //       subtracted from the given letter inventory
+   private Candidates prune(PackedInventory rest) {
+      int[] words = index.prune(rest);
+      Candidates dict = new Candidates(words.length);
+      for (int i = 0; i < words.length; i++) {
+         dict.words[i] = index.word(words[i]);
+         dict.letters[i] = index.letters(words[i]);
+      }
+      return dict;
+   }
+   
+   // This class holds the words of the dictionary that may be used for one phrase,
+   // in dictionary order, with the letter inventory of each.
+   private static class Candidates {
+      public String[] words;               // the words
+      public PackedInventory[] letters;    // letter inventory of each word
+      
+      // post: constructs room for the given number of words
+      public Candidates(int size) {
+         words = new String[size];
+         letters = new PackedInventory[size];
+      }
+   }
+   
+   // This class finds every set of words (with repeats) that uses the given letters
+   // exactly once. On each level it takes the remaining letter that the fewest
+   // fitting words contain: some word of every set has that letter, so only those
+   // words are tried. To find each set once, a word chosen for a letter is the
+   // first word with that letter in the set, so the words with that letter chosen
+   // below it come no earlier in the dictionary. The words that still fit are
+   // filtered again on every level.
+   private static class LetterSearch {
+      private PackedInventory rest;     // letters not used by the current words
+      private Candidates dict;          // words that may be used
+      private int limit;                // largest number of words in a set
+      private int[] masks;              // letters used by each word, one bit each
+      private int[] bound;              // first position in dict allowed for each letter
+      private int[] chosen;             // position in dict of each current word
+      private int[][] fitting;          // words that still fit on each level
+      private int[] perLetter;          // number of fitting words with each letter
+      private List<int[]> sets;         // the sets found, each sorted
+      
+      // post: constructs a search for the sets of words of dict that use the letters
+      //       of rest, with at most max words (no limit if max is 0)
+      public LetterSearch(PackedInventory rest, int max, Candidates dict) {
+         this.rest = new PackedInventory(rest);
+         this.dict = dict;
+         // every word has at least one letter, so rest runs out first without a limit
+         limit = max == 0 ? rest.size() : max;
+         masks = new int[dict.words.length];
+         for (int i = 0; i < masks.length; i++) {
+            for (int letter = 0; letter < PackedInventory.ALPHABET_NUM; letter++) {
+               if (dict.letters[i].get((char) ('a' + letter)) > 0) {
+                  masks[i] |= 1 << letter;
+               }
+            }
+         }
+         bound = new int[PackedInventory.ALPHABET_NUM];
+         chosen = new int[limit];
+         fitting = new int[limit + 1][];
+         perLetter = new int[PackedInventory.ALPHABET_NUM];
+      }
+      
+      // post: returns the sets of words, each as sorted positions in dict
+      public List<int[]> sets() {
+         sets = new ArrayList<>();
+         int[] all = new int[masks.length];
+         for (int i = 0; i < all.length; i++) {
+            all[i] = i;
+         }
+         search(all, all.length, 0);
+         return sets;
+      }
+      
+      // post: finds the sets that add words from the first size words of the given
+      //       fitting words to the current words (depth of them)
+      private void search(int[] candidates, int size, int depth) {
+         if (rest.isEmpty()) {
+            int[] set = Arrays.copyOf(chosen, depth);
+            Arrays.sort(set);
+            sets.add(set);
+            return;
+         }
+         if (depth == limit) {
+            return;
+         }
+         int letter = rarestLetter(candidates, size);
+         if (letter < 0) {
+            return;
+         }
+         if (fitting[depth + 1] == null) {
+            fitting[depth + 1] = new int[masks.length];
+         }
+         int[] next = fitting[depth + 1];
+         int oldBound = bound[letter];
+         for (int i = 0; i < size; i++) {
+            int word = candidates[i];
+            if ((masks[word] & 1 << letter) != 0) {
+               rest.subtract(dict.letters[word]);
+               bound[letter] = word;
+               chosen[depth] = word;
+               int nextSize = 0;
+               for (int j = 0; j < size; j++) {
+                  int other = candidates[j];
+                  if (rest.contains(dict.letters[other]) && allowed(other)) {
+                     next[nextSize] = other;
+                     nextSize++;
+                  }
                }
+               search(next, nextSize, depth + 1);
+               rest.add(dict.letters[word]);
             }
          }
+         bound[letter] = oldBound;
+      }
+      
+      // post: returns the remaining letter that the fewest of the first size fitting
+      //       words contain (-1 if some remaining letter is in none of them)
+      private int rarestLetter(int[] candidates, int size) {
+         Arrays.fill(perLetter, 0);
+         for (int i = 0; i < size; i++) {
+            for (int mask = masks[candidates[i]]; mask != 0; mask &= mask - 1) {
+               perLetter[Integer.numberOfTrailingZeros(mask)]++;
+            }
+         }
+         int result = -1;
+         for (int letter = 0; letter < PackedInventory.ALPHABET_NUM; letter++) {
+            if (rest.get((char) ('a' + letter)) > 0
+                && (result < 0 || perLetter[letter] < perLetter[result])) {
+               result = letter;
+            }
+         }
+         return result >= 0 && perLetter[result] == 0 ? -1 : result;
+      }
+      
+      // post: returns true if the given word comes no earlier than the word chosen
+      //       for any of its letters
+      private boolean allowed(int word) {
+         for (int mask = masks[word]; mask != 0; mask &= mask - 1) {
+            if (word < bound[Integer.numberOfTrailingZeros(mask)]) {
+               return false;
+            }
+         }
+         return true;
       }
    }
    
-   // post: reduces and returns the new lists of relevant words which can be subtracted
-   //       from the given letter inventory
-   private List<String> prune(LetterInventory rest) {
-      List<String> dict = new ArrayList<>();
-      for (String word : dictionary) {
-         if (rest.subtract(letterstock.get(word)) != null) {
-            dict.add(word);
+   // This class merges the orders of the words of every set into lexicographic order
+   // of the positions, which is the order in which print finds them. It keeps the
+   // next order of each set in a priority queue.
+   private static class MergedOrders extends Spliterators.AbstractSpliterator<int[]> {
+      private Queue<int[]> next;        // next order of each set that has one left
+      
+      // post: constructs a merge of the orders of the given sets, each sorted
+      public MergedOrders(List<int[]> sets) {
+         super(Long.MAX_VALUE, ORDERED | NONNULL);
+         next = new PriorityQueue<>(Math.max(sets.size(), 1), Arrays::compare);
+         next.addAll(sets);
+      }
+      
+      // post: gives the next order to the given action and returns true,
+      //       or returns false if there are no more orders
+      public boolean tryAdvance(Consumer<? super int[]> action) {
+         int[] order = next.poll();
+         if (order == null) {
+            return false;
+         }
+         int[] following = nextOrder(order);
+         if (following != null) {
+            next.add(following);
          }
+         action.accept(order);
+         return true;
+      }
+   }
+   
+   // This class searches the subtree below one partial solution, trying a range of
+   // the words that fit its remaining letters. A range of more than SPLIT_WORDS words
+   // is split in halves into two tasks. Below each word of a smaller range, a subtree
+   // with at least SPLIT_LETTERS letters left is searched the same way, so that it is
+   // split in turn, and a smaller one is searched on its own. Tasks share the words
+   // of their partial solution instead of copying them.
+   private class SearchTask extends RecursiveTask<StringBuilder> {
+      private static final long serialVersionUID = 1L;
+
+      private PackedInventory rest;     // letters not used by the words so far
+      private int max;                  // largest number of words (0 for no limit)
+      private Candidates dict;          // words that may be used
+      private Prefix sofar;             // words of the partial solution
+      private Memo memo;                // memo shared by the search (null if off)
+      private boolean ordered;          // true if solutions are returned, not printed
+      private int[] fitting;            // positions in dict of the words that fit rest
+      private int low;                  // first position in fitting to try
+      private int high;                 // position in fitting after the last one to try
+      
+      // post: constructs a task for the whole search for the given letters
+      public SearchTask(PackedInventory rest, int max, Candidates dict, Memo memo,
+                        boolean ordered) {
+         this.rest = rest;
+         this.max = max;
+         this.dict = dict;
+         this.memo = memo;
+         this.ordered = ordered;
+         sofar = new Prefix();
+         fitting = new int[dict.words.length];
+         for (int i = 0; i < fitting.length; i++) {
+            fitting[i] = i;
+         }
+         fitting = fit(fitting, rest);
+         high = fitting.length;
+      }
+      
+      // post: constructs a task for the given range of the words of the given task
+      private SearchTask(SearchTask task, int low, int high) {
+         rest = task.rest;
+         max = task.max;
+         dict = task.dict;
+         memo = task.memo;
+         ordered = task.ordered;
+         sofar = task.sofar;
+         fitting = task.fitting;
+         this.low = low;
+         this.high = high;
+      }
+      
+      // post: constructs a task for the subtree below the given partial solution,
+      //       which adds a word to one of the given task
+      private SearchTask(SearchTask task, PackedInventory rest, Prefix sofar) {
+         this.rest = rest;
+         max = task.max;
+         dict = task.dict;
+         memo = task.memo;
+         ordered = task.ordered;
+         this.sofar = sofar;
+         // words that don't fit the letters before a word don't fit after it either
+         fitting = fit(task.fitting, rest);
+         high = fitting.length;
+      }
+      
+      // post: if ordered, returns the printed lines of the solutions in this subtree
+      //       in search order; otherwise prints them and returns an empty builder
+      protected StringBuilder compute() {
+         if (rest.isEmpty()) {
+            return search(rest, sofar);
+         }
+         if (high - low > SPLIT_WORDS) {
+            int middle = (low + high) >>> 1;
+            SearchTask first = new SearchTask(this, low, middle);
+            first.fork();
+            StringBuilder second = new SearchTask(this, middle, high).compute();
+            return first.join().append(second);
+         }
+         StringBuilder output = new StringBuilder();
+         for (int i = low; i < high; i++) {
+            int word = fitting[i];
+            PackedInventory next = new PackedInventory(rest);
+            next.subtract(dict.letters[word]);
+            Prefix words = new Prefix(dict.words[word], sofar);
+            if (next.size() >= SPLIT_LETTERS && (max == 0 || words.size < max)) {
+               output.append(new SearchTask(this, next, words).compute());
+            } else {
+               output.append(search(next, words));
+            }
+         }
+         return output;
+      }
+      
+      // post: searches the subtree below the given partial solution on its own; if
+      //       ordered, returns the printed lines of its solutions in search order,
+      //       otherwise prints them and returns an empty builder
+      private StringBuilder search(PackedInventory rest, Prefix words) {
+         StringBuilder output = new StringBuilder();
+         String separator = System.lineSeparator();
+         new Solutions(rest, max, dict, words.toList(), memo).forEachRemaining(solution -> {
+            output.append(solution).append(separator);
+            if (!ordered && output.length() >= FLUSH_SIZE) {
+               System.out.append(output);
+               output.setLength(0);
+            }
+         });
+         if (!ordered) {
+            System.out.append(output);
+            output.setLength(0);
+         }
+         return output;
+      }
+      
+      // post: returns the given positions in dict, in order, of the words that fit
+      //       the given letters
+      private int[] fit(int[] words, PackedInventory letters) {
+         int[] result = new int[words.length];
+         int size = 0;
+         for (int word : words) {
+            if (letters.contains(dict.letters[word])) {
+               result[size] = word;
+               size++;
+            }
+         }
+         return Arrays.copyOf(result, size);
+      }
+   }
+   
+   // This class is the words of a partial solution: its last word and the partial
+   // solution before it, which may be shared by many longer ones and never changes.
+   private static class Prefix {
+      public String word;               // last word (null for no words)
+      public Prefix previous;           // words before the last one (null for no words)
+      public int size;                  // number of words
+      
+      // post: constructs a partial solution with no words
+      public Prefix() {
+      }
+      
+      // post: constructs the given partial solution followed by the given word
+      public Prefix(String word, Prefix previous) {
+         this.word = word;
+         this.previous = previous;
+         size = previous.size + 1;
+      }
+      
+      // post: returns the words, first one first
+      public List<String> toList() {
+         String[] words = new String[size];
+         Prefix current = this;
+         for (int i = size - 1; i >= 0; i--) {
+            words[i] = current.word;
+            current = current.previous;
+         }
+         return Arrays.asList(words);
+      }
+   }
+   
+   // This class finds the solutions below one partial solution one at a time, by a
+   // search that keeps its own stack instead of recursing. It changes one inventory
+   // of remaining letters in place and keeps the current words as positions in one
+   // array, so it creates objects only for the solutions it returns and for the
+   // subtrees it remembers. A subtree is remembered once it has been searched to
+   // its end, with the words that lead to solutions from it.
+   private class Solutions extends Spliterators.AbstractSpliterator<List<String>> {
+      private PackedInventory rest;     // letters not used by the current words
+      private Candidates dict;          // words that may be used
+      private List<String> prefix;      // words of the partial solution searched below
+      private int limit;                // largest number of words after the prefix
+      private boolean unlimited;        // true if the number of words has no limit
+      private int[] chosen;             // position in dict of each current word
+      private int[] next;               // how many words have been tried on each level
+      private int[][] only;             // remembered words to try on each level (null for all)
+      private int[][] live;             // words tried on each level that led to solutions
+      private int[] liveCount;          // number of such words on each level
+      private int depth;                // number of current words (-1 when the search is over)
+      private Memo memo;                // words leading to solutions from each subtree (null if off)
+      private MemoKey probe;            // key for looking up the current subtree
+      
+      // post: constructs a search for the solutions below the given partial solution,
+      //       whose remaining letters are rest, with at most max words in a solution
+      //       (no limit if max is 0), remembering subtrees in the given memo (none if
+      //       it is null); rest is changed while searching
+      public Solutions(PackedInventory rest, int max, Candidates dict, List<String> prefix,
+                       Memo memo) {
+         super(Long.MAX_VALUE, ORDERED | NONNULL);
+         this.rest = rest;
+         this.dict = dict;
+         this.prefix = prefix;
+         // every word has at least one letter, so rest runs out first without a limit
+         unlimited = max == 0;
+         limit = unlimited ? rest.size() : Math.max(max - prefix.size(), -1);
+         int levels = Math.max(limit, 0) + 1;
+         chosen = new int[levels];
+         next = new int[levels];
+         only = new int[levels][];
+         live = new int[levels][];
+         liveCount = new int[levels];
+         depth = limit < 0 ? -1 : 0;
+         this.memo = memo;
+         probe = new MemoKey(rest, 0);
+      }
+      
+      // post: gives the next solution to the given action and returns true,
+      //       or returns false if there are no more solutions
+      public boolean tryAdvance(Consumer<? super List<String>> action) {
+         if (depth == 0 && next[0] == 0 && rest.isEmpty()) {
+            // the prefix itself is the only solution
+            List<String> solution = solution(0);
+            depth = -1;
+            action.accept(solution);
+            return true;
+         }
+         while (depth >= 0) {
+            int count = only[depth] == null ? dict.words.length : only[depth].length;
+            if (depth < limit && next[depth] < count) {
+               int word = only[depth] == null ? next[depth] : only[depth][next[depth]];
+               next[depth]++;
+               PackedInventory letters = dict.letters[word];
+               if (rest.contains(letters)) {
+                  chosen[depth] = word;
+                  if (rest.size() == letters.size()) {
+                     // the word uses up the letters, which makes a solution
+                     addLive(depth, word);
+                     action.accept(solution(depth + 1));
+                     return true;
+                  }
+                  rest.subtract(letters);
+                  int[] remembered = recall(depth + 1);
+                  if (remembered != null && remembered.length == 0) {
+                     rest.add(letters);
+                  } else {
+                     depth++;
+                     next[depth] = 0;
+                     only[depth] = remembered;
+                     liveCount[depth] = 0;
+                  }
+               }
+            } else {
+               pop();
+            }
+         }
+         return false;
+      }
+      
+      // post: returns the words leading to solutions remembered for the remaining
+      //       letters on the given level (null if not remembered)
+      private int[] recall(int level) {
+         if (memo == null || level >= limit) {
+            return null;
+         }
+         probe.budget = budget(level);
+         return memo.get(probe);
+      }
+      
+      // post: returns the number of words a subtree on the given level may still use
+      //       (-1 for no limit)
+      private int budget(int level) {
+         return unlimited ? -1 : limit - level;
+      }
+      
+      // post: records that the given word on the given level led to solutions
+      private void addLive(int level, int word) {
+         if (live[level] == null) {
+            live[level] = new int[dict.words.length];
+         }
+         live[level][liveCount[level]] = word;
+         liveCount[level]++;
+      }
+      
+      // post: returns the prefix followed by the first n current words
+      private List<String> solution(int n) {
+         List<String> result = new ArrayList<>(prefix.size() + n);
+         result.addAll(prefix);
+         for (int i = 0; i < n; i++) {
+            result.add(dict.words[chosen[i]]);
+         }
+         return result;
+      }
+      
+      // post: leaves the current level, whose subtree has been searched to its end:
+      //       remembers it, removes the last current word, gives its letters back
+      //       and records it as leading to solutions if it did
+      private void pop() {
+         boolean solved = only[depth] != null || liveCount[depth] > 0;
+         if (memo != null && only[depth] == null && depth < limit) {
+            int[] words = live[depth] == null ? new int[0]
+                                              : Arrays.copyOf(live[depth], liveCount[depth]);
+            memo.put(new MemoKey(new PackedInventory(rest), budget(depth)), words);
+         }
+         depth--;
+         if (depth >= 0) {
+            rest.add(dict.letters[chosen[depth]]);
+            if (solved) {
+               addLive(depth, chosen[depth]);
+            }
+         }
+      }
+   }
+   
+   // This class is the memo of one search, which its tasks share: a bounded LRU
+   // cache of the words leading to solutions from each subtree. It is split by the
+   // hash of the key into up to MEMO_STRIPES caches, each locked on its own, so that tasks
+   // rarely wait for each other. It counts its lookups and the subtrees they found.
+   private static class Memo {
+      private Map<MemoKey, int[]>[] stripes;    // caches, by hash of the key
+      private AtomicLong lookups;               // number of subtrees looked up
+      private AtomicLong hits;                  // number of them that were remembered
+      
+      // pre : size > 0
+      // post: constructs an empty memo of at most the given number of subtrees
+      @SuppressWarnings("unchecked")
+      public Memo(int size) {
+         stripes = new Map[Math.min(size, MEMO_STRIPES)];
+         int stripeSize = size / stripes.length;
+         for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new LinkedHashMap<>(16, 0.75f, true) {
+               protected boolean removeEldestEntry(Map.Entry<MemoKey, int[]> eldest) {
+                  return size() > stripeSize;
+               }
+            };
+         }
+         lookups = new AtomicLong();
+         hits = new AtomicLong();
+      }
+      
+      // post: returns the words remembered for the given subtree (null if none)
+      public int[] get(MemoKey key) {
+         Map<MemoKey, int[]> stripe = stripe(key);
+         int[] words;
+         synchronized (stripe) {
+            words = stripe.get(key);
+         }
+         lookups.incrementAndGet();
+         if (words != null) {
+            hits.incrementAndGet();
+         }
+         return words;
+      }
+      
+      // post: remembers the given words for the given subtree
+      public void put(MemoKey key, int[] words) {
+         Map<MemoKey, int[]> stripe = stripe(key);
+         synchronized (stripe) {
+            stripe.put(key, words);
+         }
+      }
+      
+      // post: returns the fraction of lookups that found a subtree (0 if none)
+      public double hitRate() {
+         long count = lookups.get();
+         return count == 0 ? 0 : (double) hits.get() / count;
+      }
+      
+      // post: returns the cache that holds the given key
+      private Map<MemoKey, int[]> stripe(MemoKey key) {
+         int hash = key.hashCode();
+         return stripes[Math.floorMod(hash ^ hash >>> 16, stripes.length)];
+      }
+   }
+   
+   // This class is a key of the memo: the remaining letters of a subtree and the
+   // number of words it may still use (-1 for no limit).
+   private static class MemoKey {
+      public PackedInventory letters;   // remaining letters
+      public int budget;                // number of words that may still be used
+      
+      // post: constructs a key for the given letters and number of words
+      public MemoKey(PackedInventory letters, int budget) {
+         this.letters = letters;
+         this.budget = budget;
+      }
+      
+      // post: returns true if o is a key with the same letters and number of words
+      public boolean equals(Object o) {
+         return o instanceof MemoKey && ((MemoKey) o).budget == budget
+                && ((MemoKey) o).letters.equals(letters);
+      }
+      
+      // post: returns a hash code of the letters and number of words
+      public int hashCode() {
+         return 31 * letters.hashCode() + budget;
       }
-      return dict;
    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,297 @@
+// This class stores a canonical Huffman code, which is completely described by
+// the code length of each symbol. Symbols are given codes in order of increasing
+// length, and symbols of the same length in increasing order of their value, so
+// the codes can be rebuilt from the lengths alone and decoded with first-code and
+// offset arithmetic instead of a tree.
+//
+// By convention the last symbol (lengths.length - 1) is the pseudo-eof. A length
+// of 0 means the symbol is not used, except that a code in which every length is
+// 0 has only the pseudo-eof, whose code is empty.
+
+import java.io.*;
+import java.util.*;
+import java.util.function.*;
+
+public class CanonicalCode {
+   private int[] lengths;     // code length of each symbol (0 if not used)
+   private long[] codes;      // code of each symbol, first bit is the highest one
+   private int[] symbols;     // used symbols in canonical order
+   private int[] count;       // count[len] is the number of codes of length len
+   private int maxLength;     // length of the longest code
+
+   private static final int BUFFER_SIZE = 1 << 16;   // decoded bytes written to output at once
+
+   // pre : lengths describe a complete prefix code, i.e. the sum of 2^-length over
+   //       the used symbols is 1, and every length is at most 62
+   //       (throws an IllegalArgumentException if not)
+   // post: constructs the canonical code with the given code lengths
+   public CanonicalCode(int[] lengths) {
+      this.lengths = lengths.clone();
+      int used = 0;
+      maxLength = 0;
+      for (int length : lengths) {
+         if (length < 0 || length > 62) {
+            throw new IllegalArgumentException("code length: " + length);
+         }
+         if (length > 0) {
+            used++;
+         }
+         maxLength = Math.max(maxLength, length);
+      }
+      if (used == 0) {
+         symbols = new int[] {lengths.length - 1};
+         count = new int[] {1};
+         codes = new long[lengths.length];
+         return;
+      }
+      // counts the codes of each length and checks that they fill the code space exactly
+      count = new int[maxLength + 1];
+      long space = 0;
+      for (int length : lengths) {
+         if (length > 0) {
+            count[length]++;
+            space += 1L << (maxLength - length);
+         }
+      }
+      if (space != 1L << maxLength) {
+         throw new IllegalArgumentException("lengths are not a complete prefix code");
+      }
+      // sorts the used symbols by length, then by value
+      int[] offset = new int[maxLength + 2];
+      for (int len = 1; len <= maxLength; len++) {
+         offset[len + 1] = offset[len] + count[len];
+      }
+      symbols = new int[used];
+      for (int i = 0; i < lengths.length; i++) {
+         if (lengths[i] > 0) {
+            symbols[offset[lengths[i]]] = i;
+            offset[lengths[i]]++;
+         }
+      }
+      // assigns consecutive codes, shifting left whenever the length grows
+      codes = new long[lengths.length];
+      long code = 0;
+      int length = lengths[symbols[0]];
+      for (int symbol : symbols) {
+         code <<= lengths[symbol] - length;
+         length = lengths[symbol];
+         codes[symbol] = code;
+         code++;
+      }
+   }
+
+   // post: returns the code length of each symbol of the given tree, with
+   //       the given number of symbols (including the pseudo-eof)
+   public static int[] lengths(HuffmanNode root, int symbols) {
+      int[] lengths = new int[symbols];
+      lengths(root, 0, lengths);
+      return lengths;
+   }
+
+   // post: records the code length of each leaf of the given subtree,
+   //       which is at the given depth
+   private static void lengths(HuffmanNode root, int depth, int[] lengths) {
+      if (root.left == null) {
+         lengths[root.charCode] = depth;
+      } else {
+         lengths(root.left, depth + 1, lengths);
+         lengths(root.right, depth + 1, lengths);
+      }
+   }
+
+   // pre : count[i] should be the number of character with integer value i;
+   //       2^maxLength is at least the number of used characters plus one and
+   //       maxLength <= 62 (throws an IllegalArgumentException if not)
+   // post: returns the code length of each character and of the pseudo-eof (which
+   //       counts once) in an optimal prefix code with no code longer than maxLength,
+   //       using the package-merge algorithm
+   public static int[] limitedLengths(int[] count, int maxLength) {
+      int[] lengths = new int[count.length + 1];
+      // sorts the used characters and the pseudo-eof by frequency
+      List<Integer> used = new ArrayList<>();
+      for (int i = 0; i < count.length; i++) {
+         if (count[i] > 0) {
+            used.add(i);
+         }
+      }
+      used.add(count.length);
+      used.sort((a, b) -> Long.compare(weight(count, a), weight(count, b)));
+      int n = used.size();
+      if (maxLength < 0 || maxLength > 62 || n > 1L << maxLength) {
+         throw new IllegalArgumentException("max length: " + maxLength);
+      }
+      if (n == 1) {
+         return lengths;
+      }
+      long[] leaves = new long[n];
+      for (int i = 0; i < n; i++) {
+         leaves[i] = weight(count, used.get(i));
+      }
+      // level j merges the leaves with the packages of pairs from level j + 1;
+      // isLeaf[j][k] records whether item k of level j is a leaf
+      boolean[][] isLeaf = new boolean[maxLength + 1][];
+      long[] items = leaves;
+      isLeaf[maxLength] = new boolean[n];
+      Arrays.fill(isLeaf[maxLength], true);
+      for (int j = maxLength - 1; j >= 1; j--) {
+         int packages = items.length / 2;
+         long[] merged = new long[n + packages];
+         isLeaf[j] = new boolean[n + packages];
+         int leaf = 0;
+         int pack = 0;
+         for (int k = 0; k < merged.length; k++) {
+            if (pack == packages || (leaf < n && leaves[leaf] <= items[2 * pack] + items[2 * pack + 1])) {
+               merged[k] = leaves[leaf];
+               isLeaf[j][k] = true;
+               leaf++;
+            } else {
+               merged[k] = items[2 * pack] + items[2 * pack + 1];
+               pack++;
+            }
+         }
+         items = merged;
+      }
+      // takes the first 2n - 2 items of level 1; each leaf taken at a level
+      // adds one to its code length, each package taken uses two items below
+      int take = 2 * n - 2;
+      for (int j = 1; j <= maxLength && take > 0; j++) {
+         int packages = 0;
+         int leaf = 0;
+         for (int k = 0; k < take; k++) {
+            if (isLeaf[j][k]) {
+               lengths[used.get(leaf)]++;
+               leaf++;
+            } else {
+               packages++;
+            }
+         }
+         take = 2 * packages;
+      }
+      return lengths;
+   }
+
+   // post: returns the weight of the given character in the given counts
+   //       (the pseudo-eof, just past the end, counts once)
+   private static long weight(int[] count, int character) {
+      if (character == count.length) {
+         return 1;
+      }
+      return count[character];
+   }
+
+   // pre : count[i] should be the number of character with integer value i
+   // post: returns the number of bits the given code lengths need to encode the
+   //       given counts, plus the pseudo-eof once
+   public static long encodedBits(int[] count, int[] lengths) {
+      long bits = lengths[count.length];
+      for (int i = 0; i < count.length; i++) {
+         bits += (long) count[i] * lengths[i];
+      }
+      return bits;
+   }
+
+   // post: returns the number of symbols, including the pseudo-eof
+   public int symbols() {
+      return lengths.length;
+   }
+
+   // post: returns the code length of the given symbol (0 if it is not used)
+   public int length(int symbol) {
+      return lengths[symbol];
+   }
+
+   // post: returns the code of the given symbol; the first bit of the code
+   //       is the highest of its length(symbol) bits
+   public long code(int symbol) {
+      return codes[symbol];
+   }
+
+   // post: returns the length of the longest code
+   public int maxLength() {
+      return maxLength;
+   }
+
+   // post: builds and returns the Huffman tree of this code
+   //       (0 goes to the left subtree, 1 goes to the right subtree)
+   public HuffmanNode tree() {
+      if (maxLength == 0) {
+         return new HuffmanNode(symbols[0], -1);
+      }
+      HuffmanNode root = new HuffmanNode(-1, -1);
+      for (int symbol : symbols) {
+         HuffmanNode current = root;
+         for (int i = lengths[symbol] - 1; i > 0; i--) {
+            if ((codes[symbol] >>> i & 1) == 0) {
+               if (current.left == null) {
+                  current.left = new HuffmanNode(-1, -1);
+               }
+               current = current.left;
+            } else {
+               if (current.right == null) {
+                  current.right = new HuffmanNode(-1, -1);
+               }
+               current = current.right;
+            }
+         }
+         if ((codes[symbol] & 1) == 0) {
+            current.left = new HuffmanNode(symbol, -1);
+         } else {
+            current.right = new HuffmanNode(symbol, -1);
+         }
+      }
+      return root;
+   }
+
+   // pre : input stream contains a legal encoding of characters for this code.
+   // post: decodes the given input, and writes the corresponding integer value of characters to the output.
+   //       the character with value equal to eof parameter means the end of decoding (will not be written)
+   public void decode(BitInputStream input, PrintStream output, int eof) {
+      byte[] buffer = new byte[BUFFER_SIZE];
+      int size = 0;
+      int symbol = decodeSymbol(input);
+      while (symbol != eof) {
+         buffer[size] = (byte) symbol;
+         size++;
+         if (size == buffer.length) {
+            output.write(buffer, 0, size);
+            size = 0;
+         }
+         symbol = decodeSymbol(input);
+      }
+      output.write(buffer, 0, size);
+   }
+
+   // pre : input stream contains a legal encoding of characters for this code.
+   // post: reads one code from the given input and returns its symbol
+   //       (reads no bits past the end of that code)
+   public int decodeSymbol(BitInputStream input) {
+      return decodeSymbol(input::readBit);
+   }
+
+   // pre : input stream contains a legal encoding of characters for this code.
+   // post: reads one code from the given input and returns its symbol
+   //       (reads no bits past the end of that code)
+   public int decodeSymbol(FastBitInputStream input) {
+      return decodeSymbol(input::readBit);
+   }
+
+   // pre : bits supplies a legal encoding of characters for this code, one bit at a
+   //       time (-1 at the end of the input)
+   // post: reads one code from the given bits and returns its symbol
+   //       (reads no bits past the end of that code)
+   int decodeSymbol(IntSupplier bits) {
+      long code = 0;     // bits read so far
+      long first = 0;    // first code of the current length
+      int index = 0;     // index in symbols of the first code of the current length
+      for (int len = 1; len <= maxLength; len++) {
+         code |= Math.max(bits.getAsInt(), 0);
+         if (code - first < count[len]) {
+            return symbols[index + (int) (code - first)];
+         }
+         index += count[len];
+         first = (first + count[len]) << 1;
+         code <<= 1;
+      }
+      return symbols[0];
+   }
+}
@@ -0,0 +1,169 @@
+// This class reads bits from a file, a stream or a buffer in the same order as
+// BitInputStream (lowest bit of each byte first), but keeps up to 64 bits in an
+// accumulator that is refilled a whole word at a time, so that callers can peek
+// at and consume several bits with one call. Files are mapped into memory with
+// FileChannel.map instead of being read.
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+
+public class FastBitInputStream {
+   private ByteBuffer buffer;             // bytes not yet moved into the accumulator
+   private FileChannel file;              // mapped file (null if not reading a file)
+   private long mapped;                   // position in the file after the mapped window
+   private ReadableByteChannel channel;   // stream being read (null if not reading a stream)
+   private long bits;                     // buffered bits, the next bit is the lowest one
+   private int available;                 // number of buffered bits
+   private long consumed;                 // number of bits consumed so far
+
+   private static final int WINDOW_SIZE = 1 << 30;     // bytes of a file mapped at once
+   private static final int STREAM_BUFFER = 1 << 16;   // bytes of a stream read at once
+
+   // post: constructs a bit stream reading the remaining bytes of the given buffer
+   //       (the position of the given buffer is not changed)
+   public FastBitInputStream(ByteBuffer buffer) {
+      this.buffer = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+   }
+
+   // post: constructs a bit stream reading the given file, which is mapped into memory
+   public FastBitInputStream(String file) throws IOException {
+      this.file = FileChannel.open(Paths.get(file), StandardOpenOption.READ);
+      buffer = ByteBuffer.allocate(0);
+      mapped = 0;
+      nextBuffer();
+   }
+
+   // post: constructs a bit stream reading the given input stream
+   public FastBitInputStream(InputStream input) {
+      channel = Channels.newChannel(input);
+      buffer = ByteBuffer.allocateDirect(STREAM_BUFFER).order(ByteOrder.LITTLE_ENDIAN);
+      buffer.limit(0);
+   }
+
+   // post: reads and returns the next bit (-1 if there are no more bits)
+   public int readBit() {
+      if (available == 0) {
+         refill();
+         if (available == 0) {
+            return -1;
+         }
+      }
+      int bit = (int) bits & 1;
+      bits >>>= 1;
+      available--;
+      consumed++;
+      return bit;
+   }
+
+   // pre : 1 <= n <= 32
+   // post: returns the next n bits without consuming them, the next bit as the
+   //       lowest one; the bits after the end of the input are 0
+   public int peekBits(int n) {
+      if (available < n) {
+         refill();
+      }
+      return (int) (bits & (1L << n) - 1);
+   }
+
+   // pre : 0 <= n <= 32
+   // post: consumes the next n bits
+   public void skipBits(int n) {
+      if (available < n) {
+         refill();
+      }
+      bits >>>= n;
+      available = Math.max(available - n, 0);
+      consumed += n;
+   }
+
+   // pre : 1 <= n <= 32
+   // post: reads and returns the next n bits, the next bit as the lowest one;
+   //       the bits after the end of the input are 0
+   public int readBits(int n) {
+      int result = peekBits(n);
+      skipBits(n);
+      return result;
+   }
+
+   // post: returns the number of bits consumed so far
+   public long bitsRead() {
+      return consumed;
+   }
+
+   // pre : 0 <= bit, and this stream reads a buffer or a file
+   //       (throws an IllegalArgumentException or an UnsupportedOperationException if not)
+   // post: moves to the given bit of the input, counted from its start, so that the
+   //       next bit read is that bit
+   public void seek(long bit) {
+      if (bit < 0) {
+         throw new IllegalArgumentException("bit: " + bit);
+      }
+      long start = bit >>> 3;
+      if (file != null) {
+         mapped = start;
+         buffer = ByteBuffer.allocate(0);
+         nextBuffer();
+      } else if (channel == null) {
+         buffer.position((int) Math.min(start, buffer.limit()));
+      } else {
+         throw new UnsupportedOperationException("cannot seek in a stream");
+      }
+      bits = 0;
+      available = 0;
+      consumed = start * 8;
+      skipBits((int) (bit & 7));
+   }
+
+   // post: closes the underlying file or stream
+   public void close() throws IOException {
+      if (file != null) {
+         file.close();
+      }
+      if (channel != null) {
+         channel.close();
+      }
+   }
+
+   // post: moves as many whole bytes as fit into the accumulator
+   //       (fewer only at the end of the input)
+   private void refill() {
+      if (buffer.remaining() >= 8) {
+         // bits past the taken bytes are the true next bits and are taken again later
+         bits |= buffer.getLong(buffer.position()) << available;
+         int taken = (63 - available) >>> 3;
+         buffer.position(buffer.position() + taken);
+         available += taken * 8;
+      } else {
+         while (available <= 56 && (buffer.hasRemaining() || nextBuffer())) {
+            bits |= (buffer.get() & 0xffL) << available;
+            available += 8;
+         }
+      }
+   }
+
+   // post: replaces the buffer with the next window of the file or the next bytes of
+   //       the stream, keeping its unread bytes; returns false if there are no more bytes
+   private boolean nextBuffer() {
+      try {
+         if (file != null && mapped < file.size()) {
+            // the next window starts at the first unread byte
+            long start = mapped - buffer.remaining();
+            long size = Math.min(WINDOW_SIZE, file.size() - start);
+            buffer = file.map(FileChannel.MapMode.READ_ONLY, start, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            mapped = start + size;
+            return true;
+         } else if (channel != null) {
+            buffer.compact();
+            int n = channel.read(buffer);
+            buffer.flip();
+            return n > 0 || buffer.hasRemaining();
+         }
+         return false;
+      } catch (IOException e) {
+         throw new UncheckedIOException(e);
+      }
+   }
+}
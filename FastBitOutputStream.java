@@ -0,0 +1,100 @@
+// This class writes bits to a file or a stream in the same order as BitOutputStream
+// (lowest bit of each byte first), but collects them in a 64-bit accumulator and a
+// direct buffer, so that a whole code can be written with one call and the bytes
+// reach the underlying channel in bulk.
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+
+public class FastBitOutputStream {
+   private WritableByteChannel channel;   // where the bytes go
+   private ByteBuffer buffer;             // bytes not yet written to the channel
+   private long bits;                     // bits not yet moved into the buffer, first bit lowest
+   private int count;                     // number of bits in the accumulator
+   private long written;                  // number of bits written so far
+
+   private static final int BUFFER_SIZE = 1 << 16;
+
+   // post: constructs a bit stream writing to the given file
+   public FastBitOutputStream(String file) throws IOException {
+      this(FileChannel.open(Paths.get(file), StandardOpenOption.CREATE,
+                            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING));
+   }
+
+   // post: constructs a bit stream writing to the given output stream
+   public FastBitOutputStream(OutputStream output) {
+      this(Channels.newChannel(output));
+   }
+
+   // post: constructs a bit stream writing to the given channel
+   public FastBitOutputStream(WritableByteChannel channel) {
+      this.channel = channel;
+      buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+   }
+
+   // pre : bit is 0 or 1 (throws an IllegalArgumentException if not)
+   // post: writes the given bit
+   public void writeBit(int bit) {
+      if (bit < 0 || bit > 1) {
+         throw new IllegalArgumentException("Illegal bit: " + bit);
+      }
+      writeBits(bit, 1);
+   }
+
+   // pre : 0 <= length <= 57 and code has no bits set at or above length
+   // post: writes the lowest length bits of code, lowest bit first
+   public void writeBits(long code, int length) {
+      if (count + length > 64) {
+         drain();
+      }
+      bits |= code << count;
+      count += length;
+      written += length;
+   }
+
+   // post: returns the number of bits written so far
+   public long bitsWritten() {
+      return written;
+   }
+
+   // post: writes all of the whole bytes written so far to the underlying channel
+   public void flush() throws IOException {
+      drain();
+      buffer.flip();
+      while (buffer.hasRemaining()) {
+         channel.write(buffer);
+      }
+      buffer.clear();
+   }
+
+   // post: pads the last byte with 0s, writes everything and closes the channel
+   public void close() throws IOException {
+      count = (count + 7) / 8 * 8;
+      flush();
+      channel.close();
+   }
+
+   // post: moves the whole bytes of the accumulator into the buffer,
+   //       writing the buffer to the channel first if it is full
+   private void drain() {
+      if (buffer.remaining() < 8) {
+         try {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+               channel.write(buffer);
+            }
+            buffer.clear();
+         } catch (IOException e) {
+            throw new UncheckedIOException(e);
+         }
+      }
+      // puts all 8 bytes but keeps only the whole ones; the rest is overwritten later
+      int bytes = count >>> 3;
+      buffer.putLong(buffer.position(), bits);
+      buffer.position(buffer.position() + bytes);
+      bits = bytes == 8 ? 0 : bits >>> (bytes * 8);
+      count -= bytes * 8;
+   }
+}
@@ -1,9 +1,50 @@
 // This class stores the grammar and generates random elements of the grammar
+//    The grammar is compiled once: every nonterminal gets a number, and every
+//    rule becomes an array of tokens, where a token >= 0 is the number of a
+//    nonterminal and a token < 0 is ~t for the terminal terminals[t]. Elements
+//    are generated by appending to one StringBuilder. Large numbers of elements
+//    can also be generated in parallel, in chunks that each have their own
+//    SplittableRandom, on the common ForkJoinPool or one given to the solver,
+//    and written to a Writer or OutputStream in order as the chunks are done,
+//    so that they are never all in memory at once.
+//    An element is derived with an explicit stack instead of recursion, so that
+//    deep grammars cannot overflow the Java stack. Its depth (nonterminals
+//    nested in each other) and length can be limited: only rules that can still
+//    finish within both limits are picked, which steers a derivation toward
+//    rules that end it as a limit comes near. The least length of every rule
+//    within every depth is worked out once, so a rule is picked only if it can
+//    finish within what is left of both limits at once. Rules that can never
+//    finish are not picked, and a nonterminal with no finite element is
+//    refused, but without limits a grammar that grows faster than it ends
+//    (such as <s>::=<s> <s> <s>|x) may still derive until memory runs out,
+//    so such grammars should be given limits.
 
+import java.io.*;
+import java.nio.charset.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.random.*;
 
 public class GrammarSolver {
-   private SortedMap<String, String[]> elementStock;
+   private SortedMap<String, Integer> symbols;   // number of each nonterminal
+   private int[][][] rules;                      // tokens of the rules of each nonterminal
+   private String[] terminals;                   // the terminals used by the rules
+   private long[][] minCosts;                    // least cost of an element of each nonterminal
+                                                 // within each depth (minCosts[depth - 1])
+   private long[][][] ruleCosts;                 // least cost of the element of each rule
+                                                 // within each depth (ruleCosts[depth - 1])
+   private boolean endless;                      // true if some rule can never finish
+   private int maxDepth;                         // greatest depth of an element
+   private int maxLength;                        // greatest length of an element
+   private ForkJoinPool pool;                    // pool that generates streamed elements
+   
+   public static final int CHUNK_SIZE = 4096;    // elements generated by one task
+   public static final int UNLIMITED = Integer.MAX_VALUE;
+   
+   // the cost of an element is the sum of the lengths of its terminals plus one for
+   // each of them, which is at least its length plus one (a terminal adds at most
+   // one space before it); elements that never finish cost INFINITE
+   private static final long INFINITE = Long.MAX_VALUE / 4;
    
    // pre : the grammar should not be empty && each entry in the grammar should be the grammar
    //       of different nonterminal (throws an IllegalArgumentException if any of these is not satisfied)
@@ -11,11 +52,19 @@ public class GrammarSolver {
    //       the nonterminal of each string should not be empty, and does not contain ant whitespace
    //       there can be duplicates among the rules of one nonterminal
    // post: stores the given grammar for the convenience of later generating parts of grammar
+   //       (streamed elements are generated on the common ForkJoinPool)
    public GrammarSolver(List<String> grammar) {
+      this(grammar, ForkJoinPool.commonPool());
+   }
+   
+   // pre : as above
+   // post: stores the given grammar as above; streamed elements are generated on
+   //       the given pool
+   public GrammarSolver(List<String> grammar, ForkJoinPool pool) {
       if (grammar.size() == 0) {
          throw new IllegalArgumentException();
       }
-      elementStock = new TreeMap<String, String[]>();
+      SortedMap<String, String[]> elementStock = new TreeMap<String, String[]>();
       for (String line : grammar) {
          // separates nonterminal and its rules by "::=" without quotes
          String[] elements = line.split("::=");
@@ -27,58 +76,391 @@ public class GrammarSolver {
       }
       
       if (grammar.size() > elementStock.keySet().size()) {
-         elementStock.clear();
          throw new IllegalArgumentException();
       }
+      // numbers the nonterminals in order
+      symbols = new TreeMap<String, Integer>();
+      for (String key : elementStock.keySet()) {
+         symbols.put(key, symbols.size());
+      }
+      // splits every rule into tokens once
+      Map<String, Integer> terminalNumbers = new HashMap<String, Integer>();
+      List<String> terminalList = new ArrayList<String>();
+      rules = new int[symbols.size()][][];
+      for (String key : elementStock.keySet()) {
+         String[] values = elementStock.get(key);
+         int[][] compiled = new int[values.length][];
+         for (int i = 0; i < values.length; i++) {
+            String[] tokens = values[i].trim().split("[ \t]+");
+            compiled[i] = new int[tokens.length];
+            for (int j = 0; j < tokens.length; j++) {
+               if (symbols.containsKey(tokens[j])) {
+                  compiled[i][j] = symbols.get(tokens[j]);
+               } else {
+                  if (!terminalNumbers.containsKey(tokens[j])) {
+                     terminalNumbers.put(tokens[j], terminalList.size());
+                     terminalList.add(tokens[j]);
+                  }
+                  compiled[i][j] = ~terminalNumbers.get(tokens[j]);
+               }
+            }
+         }
+         rules[symbols.get(key)] = compiled;
+      }
+      terminals = terminalList.toArray(new String[terminalList.size()]);
+      measureRules();
+      maxDepth = UNLIMITED;
+      maxLength = UNLIMITED;
+      this.pool = pool;
+   }
+   
+   // pre : maxDepth >= 1 && maxLength >= 0 (throws an IllegalArgumentException if not);
+   //       UNLIMITED for no limit
+   // post: limits the elements generated from now on to the given depth (a nonterminal
+   //       is at depth 1, the nonterminals of its rule at depth 2 and so on) and the
+   //       given number of characters
+   public void setLimits(int maxDepth, int maxLength) {
+      if (maxDepth < 1 || maxLength < 0) {
+         throw new IllegalArgumentException("max depth: " + maxDepth + "; max length: "
+                                            + maxLength);
+      }
+      this.maxDepth = maxDepth;
+      this.maxLength = maxLength;
    }
    
    // post: returns true if the given symbol is a nonterminal of the grammar
    //       returns false otherwise
    public boolean grammarContains(String symbol) {
-      return elementStock.containsKey(symbol);
+      return symbols.containsKey(symbol);
    }
    
    // post: return a string representation of the various nonterminal symbols
    //       from the grammar as a sorted, comma-separated list enclosed in square brackets
    public String getSymbols() {
-      Set<String> keys = elementStock.keySet();
+      Set<String> keys = symbols.keySet();
       return keys.toString();
    }
    
    // pre : the given symbol should be included in the grammar && times >= 0
    //       (throws an IllegalArgumentException if any of these is not satisfied)
    //       case-sensitive
+   //       the symbol should have an element within the limits unless times is 0
+   //       (throws an IllegalStateException if not)
    // post: randomly generates the given number of occurrences of the given symbol
    //       (each rules with equal probability && duplicate rules with higher probability)
    public String[] generate(String symbol, int times) {
-      if (!elementStock.containsKey(symbol) || times <0) {
+      if (!symbols.containsKey(symbol) || times <0) {
          throw new IllegalArgumentException();
       }
+      if (times == 0) {
+         return new String[0];
+      }
+      int number = symbols.get(symbol);
+      Derivation derivation = new Derivation(number);
       String[] result = new String[times];
+      StringBuilder output = new StringBuilder();
       for (int i = 0; i < times; i++) {
-         result[i] = generate(symbol);
+         output.setLength(0);
+         derivation.generate(output, ThreadLocalRandom.current());
+         result[i] = output.toString();
       }
       return result;
    }
    
-   // pre : the given symbol should be included in the grammar
-   // post: randomly generates one occurrence of the given symbol
-   //       (each rules with equal probability && duplicate rules with higher probability)
-   private String generate(String symbol) {
-      String result = "";
-      // gets all the rules of the symbol
-      String[] values = elementStock.get(symbol);
-      // generates random index and gets a certain rule
-      int num = (int) (Math.random() * (values.length));
-      String[] terminals = values[num].trim().split("[ \t]+");
-      // generate each elements in this rule
-      for (String t : terminals) {
-         if (grammarContains(t)) {
-            result = result + " " + generate(t);
+   // pre : the given symbol should be included in the grammar && times >= 0
+   //       (throws an IllegalArgumentException if any of these is not satisfied)
+   // post: randomly generates the given number of occurrences of the given symbol in
+   //       parallel and writes them to output, one on each line
+   public void generate(String symbol, long times, Writer output) throws IOException {
+      generate(symbol, times, output, ThreadLocalRandom.current().nextLong());
+   }
+   
+   // pre : the given symbol should be included in the grammar && times >= 0
+   //       (throws an IllegalArgumentException if any of these is not satisfied)
+   // post: as above, but from the given seed, so that the same seed always writes
+   //       the same lines
+   public void generate(String symbol, long times, Writer output, long seed)
+         throws IOException {
+      generate(symbol, times, seed, output, null);
+   }
+   
+   // pre : the given symbol should be included in the grammar && times >= 0
+   //       (throws an IllegalArgumentException if any of these is not satisfied)
+   // post: randomly generates the given number of occurrences of the given symbol in
+   //       parallel and writes them to output in UTF-8, one on each line
+   public void generate(String symbol, long times, OutputStream output) throws IOException {
+      generate(symbol, times, output, ThreadLocalRandom.current().nextLong());
+   }
+   
+   // pre : the given symbol should be included in the grammar && times >= 0
+   //       (throws an IllegalArgumentException if any of these is not satisfied)
+   // post: as above, but from the given seed, so that the same seed always writes
+   //       the same lines
+   public void generate(String symbol, long times, OutputStream output, long seed)
+         throws IOException {
+      generate(symbol, times, seed, null, output);
+   }
+   
+   // pre : exactly one of writer and stream is not null;
+   //       the symbol should have an element within the limits
+   //       (throws an IllegalStateException if not)
+   // post: generates the given number of occurrences of the given symbol in chunks of
+   //       CHUNK_SIZE on the pool of the solver and writes them to writer, or to
+   //       stream in UTF-8, in order; at most two chunks for each worker are waiting
+   //       to be written at any time
+   private void generate(String symbol, long times, long seed, Writer writer,
+                         OutputStream stream) throws IOException {
+      if (!symbols.containsKey(symbol) || times < 0) {
+         throw new IllegalArgumentException();
+      }
+      int number = symbols.get(symbol);
+      new Derivation(number);    // checks the limits before anything is written
+      // the chunks get their randoms in order, so the seed decides every line
+      SplittableRandom random = new SplittableRandom(seed);
+      Queue<ForkJoinTask<Chunk>> waiting = new ArrayDeque<ForkJoinTask<Chunk>>();
+      for (long start = 0; start < times; start += CHUNK_SIZE) {
+         int size = (int) Math.min(CHUNK_SIZE, times - start);
+         SplittableRandom chunkRandom = random.split();
+         waiting.add(pool.submit(() -> generateChunk(number, size, chunkRandom, stream != null)));
+         if (waiting.size() >= 2 * pool.getParallelism()) {
+            write(waiting.remove().join(), writer, stream);
+         }
+      }
+      while (!waiting.isEmpty()) {
+         write(waiting.remove().join(), writer, stream);
+      }
+      if (writer != null) {
+         writer.flush();
+      } else {
+         stream.flush();
+      }
+   }
+   
+   // post: generates the given number of occurrences of the given nonterminal with the
+   //       given random, one on each line, and encodes them in UTF-8 if encode is true
+   private Chunk generateChunk(int symbol, int size, SplittableRandom random, boolean encode) {
+      Derivation derivation = new Derivation(symbol);
+      StringBuilder output = new StringBuilder();
+      for (int i = 0; i < size; i++) {
+         derivation.generate(output, random);
+         output.append('\n');
+      }
+      Chunk chunk = new Chunk();
+      if (encode) {
+         chunk.bytes = output.toString().getBytes(StandardCharsets.UTF_8);
+      } else {
+         chunk.text = output;
+      }
+      return chunk;
+   }
+   
+   // post: writes the given chunk to writer, or to stream if writer is null
+   private static void write(Chunk chunk, Writer writer, OutputStream stream)
+         throws IOException {
+      if (writer != null) {
+         writer.append(chunk.text);
+      } else {
+         stream.write(chunk.bytes);
+      }
+   }
+   
+   // post: computes the least cost of an element of every rule and every nonterminal
+   //       within every depth, INFINITE for those that cannot finish within it; the
+   //       last depth computed holds for every greater depth
+   private void measureRules() {
+      List<long[]> symbolLevels = new ArrayList<long[]>();
+      List<long[][]> ruleLevels = new ArrayList<long[][]>();
+      long[] below = new long[rules.length];    // least costs within one depth less
+      Arrays.fill(below, INFINITE);
+      // a least element never needs a nonterminal inside itself, so the costs stop
+      // changing after at most one depth for each nonterminal
+      boolean changed = true;
+      while (changed) {
+         changed = false;
+         long[] level = new long[rules.length];
+         long[][] ruleLevel = new long[rules.length][];
+         for (int symbol = 0; symbol < rules.length; symbol++) {
+            level[symbol] = INFINITE;
+            ruleLevel[symbol] = new long[rules[symbol].length];
+            for (int rule = 0; rule < rules[symbol].length; rule++) {
+               long cost = 0;
+               for (int token : rules[symbol][rule]) {
+                  if (token >= 0) {
+                     cost = Math.min(INFINITE, cost + below[token]);
+                  } else {
+                     cost = Math.min(INFINITE, cost + terminals[~token].length() + 1);
+                  }
+               }
+               ruleLevel[symbol][rule] = cost;
+               level[symbol] = Math.min(level[symbol], cost);
+            }
+            if (level[symbol] != below[symbol]) {
+               changed = true;
+            }
+         }
+         symbolLevels.add(level);
+         ruleLevels.add(ruleLevel);
+         below = level;
+      }
+      minCosts = symbolLevels.toArray(new long[symbolLevels.size()][]);
+      ruleCosts = ruleLevels.toArray(new long[ruleLevels.size()][][]);
+      endless = false;
+      for (long[] costs : ruleCosts[ruleCosts.length - 1]) {
+         for (long cost : costs) {
+            endless = endless || cost == INFINITE;
+         }
+      }
+   }
+   
+   // pre : depth >= 1
+   // post: returns the index of the least costs within the given depth
+   private int level(int depth) {
+      return Math.min(depth, minCosts.length) - 1;
+   }
+   
+   // This class derives elements of one nonterminal with an explicit stack of the
+   // rules being expanded, within the limits set when it was created. The stack is
+   // reused from one element to the next.
+   private class Derivation {
+      private int symbol;          // the nonterminal derived
+      private int depthLimit;      // greatest depth of an element
+      private long costLimit;      // greatest cost of an element
+      private boolean limited;     // true if the limits or endless rules may rule out any rule
+      private int[][] frames;      // tokens of the rule being expanded at each depth
+      private int[] positions;     // next token of the rule at each depth
+      private int[] starts;        // where the output of the rule at each depth starts
+      private int[] ends;          // end of its last element that is not empty
+      private int[] befores;       // where the output of its current element starts
+      private int size;            // number of rules on the stack
+      private long used;           // cost of the terminals output so far
+      private long reserved;       // least cost of the tokens still to be expanded
+      
+      // pre : the nonterminal has a finite element within the limits
+      //       (throws an IllegalStateException if not)
+      // post: constructs a derivation of the given nonterminal
+      public Derivation(int symbol) {
+         this.symbol = symbol;
+         depthLimit = maxDepth;
+         costLimit = maxLength == UNLIMITED ? INFINITE : maxLength + 1L;
+         limited = maxDepth != UNLIMITED || maxLength != UNLIMITED || endless;
+         long least = minCosts[level(depthLimit)][symbol];
+         if (least == INFINITE && maxDepth == UNLIMITED) {
+            throw new IllegalStateException("no finite element");
+         } else if (least == INFINITE || least > costLimit) {
+            throw new IllegalStateException("no element within depth " + maxDepth
+                                            + " and length " + maxLength);
+         }
+         frames = new int[16][];
+         positions = new int[16];
+         starts = new int[16];
+         ends = new int[16];
+         befores = new int[16];
+      }
+      
+      // post: randomly generates one occurrence of the nonterminal with the given
+      //       random and appends it to output: the elements of a rule separated by
+      //       spaces, without spaces before the first or after the last element that
+      //       is not empty
+      //       (each rules with equal probability && duplicate rules with higher probability)
+      public void generate(StringBuilder output, RandomGenerator random) {
+         used = 0;
+         reserved = minCosts[level(depthLimit)][symbol];
+         push(symbol, output, random);
+         while (size > 0) {
+            int top = size - 1;
+            int[] tokens = frames[top];
+            if (positions[top] < tokens.length) {
+               int token = tokens[positions[top]];
+               positions[top]++;
+               if (ends[top] > starts[top]) {
+                  output.append(' ');
+               }
+               befores[top] = output.length();
+               if (token >= 0) {
+                  push(token, output, random);
+               } else {
+                  String terminal = terminals[~token];
+                  output.append(terminal);
+                  used += terminal.length() + 1;
+                  reserved -= terminal.length() + 1;
+                  finishElement(top, output);
+               }
+            } else {
+               output.setLength(ends[top]);
+               size--;
+               if (size > 0) {
+                  finishElement(size - 1, output);
+               }
+            }
+         }
+      }
+      
+      // pre : the nonterminal was reserved the least cost of an element within what
+      //       is left of the depth limit
+      // post: picks a rule of the given nonterminal at random among those that can
+      //       finish within what is left of both limits and puts it on top of the stack
+      private void push(int nonterminal, StringBuilder output, RandomGenerator random) {
+         int[][] values = rules[nonterminal];
+         int rule;
+         if (!limited) {
+            rule = random.nextInt(values.length);
          } else {
-            result = result + " " + t;
+            // the tokens still to be expanded keep their least cost within their depth
+            // in reserve, so the rule of that least cost always fits
+            int level = level(depthLimit - size);
+            long cost = costLimit - used - (reserved - minCosts[level][nonterminal]);
+            int allowed = 0;
+            for (int i = 0; i < values.length; i++) {
+               if (fits(nonterminal, i, level, cost)) {
+                  allowed++;
+               }
+            }
+            int pick = random.nextInt(allowed);
+            rule = 0;
+            while (!fits(nonterminal, rule, level, cost) || pick > 0) {
+               if (fits(nonterminal, rule, level, cost)) {
+                  pick--;
+               }
+               rule++;
+            }
+            reserved += ruleCosts[level][nonterminal][rule] - minCosts[level][nonterminal];
+         }
+         if (size == frames.length) {
+            frames = Arrays.copyOf(frames, 2 * size);
+            positions = Arrays.copyOf(positions, 2 * size);
+            starts = Arrays.copyOf(starts, 2 * size);
+            ends = Arrays.copyOf(ends, 2 * size);
+            befores = Arrays.copyOf(befores, 2 * size);
+         }
+         frames[size] = values[rule];
+         positions[size] = 0;
+         starts[size] = output.length();
+         ends[size] = output.length();
+         size++;
+      }
+      
+      // post: returns true if the given rule of the given nonterminal has a finite element
+      //       of at most the given cost within the depth of the given level
+      private boolean fits(int nonterminal, int rule, int level, long cost) {
+         long least = ruleCosts[level][nonterminal][rule];
+         return least != INFINITE && least <= cost;
+      }
+      
+      // post: ends the current element of the rule at the given depth: it becomes the
+      //       last element that is not empty, unless it is empty, in which case a space
+      //       before it is dropped if no element before it is not empty
+      private void finishElement(int depth, StringBuilder output) {
+         if (output.length() > befores[depth]) {
+            ends[depth] = output.length();
+         } else if (ends[depth] == starts[depth]) {
+            output.setLength(starts[depth]);
          }
       }
-      return result.trim();
+   }
+   
+   // This class holds the lines generated by one task, as text or as UTF-8 bytes.
+   private static class Chunk {
+      private StringBuilder text;
+      private byte[] bytes;
    }
 }
\ No newline at end of file
@@ -0,0 +1,91 @@
+// This class is an index of the words of one length in a hangman dictionary. It
+// numbers the words in alphabetical order and keeps, for every letter and every
+// position, the set of words having that letter at that position, as a bitset
+// (bit id % 64 of long id / 64 for word number id). A game can then keep its
+// current words as one more bitset and split them by a guess with AND and AND NOT
+// of the bitsets of the guessed letter. The index never changes once it is built,
+// so any number of games, in any number of threads, can share it. The positions
+// of a letter in a word are kept as the bits of one long, so words can be at most
+// MAX_LENGTH (64) letters long; longer lengths are rejected.
+
+import java.util.*;
+
+public class HangmanIndex {
+   private int length;           // length of the words
+   private String[] words;       // the words, in alphabetical order
+   private char[] letters;       // the letters used by the words, in order
+   private long[][] positions;   // words with letters[k] at position i, in positions[k * length + i]
+
+   public static final int MAX_LENGTH = 64;
+
+   // pre : 1 <= length <= MAX_LENGTH (throws an IllegalArgumentException if not)
+   // post: builds an index of the words of the dictionary with the given length,
+   //       in lower case and without duplicates
+   public HangmanIndex(Collection<String> dictionary, int length) {
+      if (length < 1 || length > MAX_LENGTH) {
+         throw new IllegalArgumentException("length: " + length);
+      }
+      this.length = length;
+      Set<String> sorted = new TreeSet<String>();
+      Set<Character> used = new TreeSet<Character>();
+      for (String word : dictionary) {
+         String lower = word.toLowerCase();
+         if (word.length() == length && lower.length() == length) {
+            sorted.add(lower);
+            for (int i = 0; i < length; i++) {
+               used.add(lower.charAt(i));
+            }
+         }
+      }
+      words = sorted.toArray(new String[sorted.size()]);
+      letters = new char[used.size()];
+      int k = 0;
+      for (char letter : used) {
+         letters[k] = letter;
+         k++;
+      }
+      positions = new long[letters.length * length][(words.length + 63) / 64];
+      for (int id = 0; id < words.length; id++) {
+         for (int i = 0; i < length; i++) {
+            int letter = Arrays.binarySearch(letters, words[id].charAt(i));
+            positions[letter * length + i][id >>> 6] |= 1L << id;
+         }
+      }
+   }
+
+   // post: returns the length of the words
+   public int length() {
+      return length;
+   }
+
+   // post: returns the number of words
+   public int size() {
+      return words.length;
+   }
+
+   // pre : 0 <= id < size()
+   // post: returns the word with the given number
+   public String word(int id) {
+      return words[id];
+   }
+
+   // post: returns the number of longs in a bitset of the words
+   public int bitsetLength() {
+      return (words.length + 63) / 64;
+   }
+
+   // post: returns the letters used by the words, in order
+   //       (the array is shared and must not be changed)
+   char[] letters() {
+      return letters;
+   }
+
+   // pre : 0 <= position < length()
+   // post: returns the bitset of the words with the given letter at the given
+   //       position, or null if no word has the letter anywhere
+   //       (the bitset is shared and must not be changed)
+   long[] positions(char letter, int position) {
+      int k = Arrays.binarySearch(letters, letter);
+      return k < 0 ? null : positions[k * length + position];
+   }
+}
@@ -0,0 +1,321 @@
+// This class is a lookahead strategy for evil hangman. Instead of keeping the
+// largest family of words after a guess, it scores every family by playing the
+// game forward: the player picks the letter that is best for them and the host
+// picks the family that is worst for the player, for a number of guesses ahead.
+// A family scores the number of wrong guesses the host can force, then the number
+// of words left at the end, so a family that costs the player a guess beats a
+// larger one that does not. The search deepens one guess at a time until the time
+// budget of the guess is spent, and the last depth finished decides. The families
+// of a guess are scored in parallel on a ForkJoinPool, and scores are remembered
+// by word set, guessed letters and depth, so one strategy can serve many games.
+// Families are split with the bitsets of the index, as HangmanManager does.
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+public class HangmanLookahead {
+   private int maxDepth;                  // most guesses to look ahead
+   private long budget;                   // time (ns) each guess may take
+   private ForkJoinPool pool;             // pool that scores the families
+   private Map<State, Long> memo;         // remembered scores
+   private AtomicLong memoWords;          // number of words in the states of the memo
+   private volatile int lastDepth;        // depth that decided the last guess
+
+   public static final int MEMO_WORDS = 1 << 22;  // most words kept by the memo
+
+   private static final long WRONG = 1L << 32;     // score of one wrong guess
+
+   // pre : maxDepth >= 1 && budget >= 0 (throws an IllegalArgumentException if not)
+   // post: constructs a strategy that looks at most maxDepth guesses ahead and
+   //       spends at most budget nanoseconds on each guess, on the given pool
+   public HangmanLookahead(int maxDepth, long budget, ForkJoinPool pool) {
+      if (maxDepth < 1 || budget < 0) {
+         throw new IllegalArgumentException("max depth: " + maxDepth + "; budget: " + budget);
+      }
+      this.maxDepth = maxDepth;
+      this.budget = budget;
+      this.pool = pool;
+      memo = new ConcurrentHashMap<State, Long>();
+      memoWords = new AtomicLong();
+   }
+
+   // post: returns the number of guesses looked ahead to decide the last guess
+   //       (0 if the time ran out before one guess ahead was finished)
+   public int lastDepth() {
+      return lastDepth;
+   }
+
+   // pre : families holds the word numbers of each family of the guess (in
+   //       increasing order), masks the positions of the guess in each family, and
+   //       guessed the letters guessed so far, including the guess;
+   //       greedy is the family the plain strategy would keep
+   // post: returns the family to keep
+   public int choose(HangmanIndex index, int[][] families, long[] masks, Set<Character> guessed,
+                     int greedy) {
+      // may overflow for a large budget, so times are compared by their difference
+      long deadline = System.nanoTime() + budget;
+      String letters = key(guessed);
+      int best = greedy;
+      int depth = 0;
+      try {
+         for (depth = 1; depth <= maxDepth; depth++) {
+            List<FamilyTask> tasks = new ArrayList<FamilyTask>();
+            for (int i = 0; i < families.length; i++) {
+               tasks.add(new FamilyTask(index, families[i], masks[i], letters, depth - 1,
+                                        deadline));
+            }
+            pool.invoke(new Evaluation(tasks));
+            // of the families with the best score, the plain strategy's choice wins,
+            // then the first one
+            long bestScore = tasks.get(greedy).score;
+            int choice = greedy;
+            for (int i = 0; i < families.length; i++) {
+               if (tasks.get(i).score > bestScore) {
+                  bestScore = tasks.get(i).score;
+                  choice = i;
+               }
+            }
+            best = choice;
+         }
+      } catch (Timeout e) {
+         // the last depth finished decides
+      }
+      lastDepth = depth - 1;
+      return best;
+   }
+
+   // post: returns the score of the given family, kept after a guess with the given
+   //       positions, looking depth guesses further ahead
+   private long score(HangmanIndex index, int[] words, long mask, String guessed, int depth,
+                      long deadline) {
+      return (mask == 0 ? WRONG : 0) + value(index, words, guessed, depth, deadline);
+   }
+
+   // post: returns the score of the given words for the host when the player guesses
+   //       next, looking depth guesses ahead
+   private long value(HangmanIndex index, int[] words, String guessed, int depth,
+                      long deadline) {
+      if (depth == 0 || words.length <= 1) {
+         return words.length;
+      }
+      if (System.nanoTime() - deadline > 0) {
+         throw new Timeout();
+      }
+      State state = new State(index, words, guessed, depth);
+      Long known = memo.get(state);
+      if (known != null) {
+         return known;
+      }
+      long[] set = new long[index.bitsetLength()];
+      for (int word : words) {
+         set[word >>> 6] |= 1L << word;
+      }
+      // the player picks the letter whose worst family is the smallest
+      long best = Long.MAX_VALUE;
+      for (char letter : candidates(index, set, guessed)) {
+         if (System.nanoTime() - deadline > 0) {
+            throw new Timeout();
+         }
+         String next = add(guessed, letter);
+         long worst = 0;
+         for (Map.Entry<Long, int[]> family : split(index, words, set, letter).entrySet()) {
+            worst = Math.max(worst, score(index, family.getValue(), family.getKey(), next,
+                                          depth - 1, deadline));
+         }
+         best = Math.min(best, worst);
+      }
+      if (best == Long.MAX_VALUE) {
+         best = words.length;    // nothing left to guess
+      }
+      // the memo is cleared once the word numbers it keeps would pass MEMO_WORDS
+      if (memoWords.addAndGet(words.length) > MEMO_WORDS) {
+         memo.clear();
+         memoWords.set(words.length);
+      }
+      memo.put(state, best);
+      return best;
+   }
+
+   // pre : set is the bitset of some words of the index
+   // post: returns the letters not guessed yet that some of the words use, in order
+   private static List<Character> candidates(HangmanIndex index, long[] set, String guessed) {
+      List<Character> letters = new ArrayList<Character>();
+      for (char letter : index.letters()) {
+         if (guessed.indexOf(letter) < 0 && uses(index, set, letter)) {
+            letters.add(letter);
+         }
+      }
+      return letters;
+   }
+
+   // post: returns true if some word of the given bitset has the given letter
+   private static boolean uses(HangmanIndex index, long[] set, char letter) {
+      for (int i = 0; i < index.length(); i++) {
+         long[] row = index.positions(letter, i);
+         for (int block = 0; block < set.length; block++) {
+            if ((row[block] & set[block]) != 0) {
+               return true;
+            }
+         }
+      }
+      return false;
+   }
+
+   // pre : words are in increasing order, set is their bitset and some word of the
+   //       index has the given letter
+   // post: splits the words into families by the positions of the given letter and
+   //       returns the word numbers of each family, in increasing order, by positions
+   private static Map<Long, int[]> split(HangmanIndex index, int[] words, long[] set,
+                                         char letter) {
+      long[][] rows = new long[index.length()][];
+      for (int i = 0; i < rows.length; i++) {
+         rows[i] = index.positions(letter, i);
+      }
+      // the positions of the letter are gathered from the bitsets of each position,
+      // 64 words at a time, and come out in the order of the words
+      long[] masks = new long[words.length];
+      long[] blockMasks = new long[64];
+      Map<Long, Integer> sizes = new HashMap<Long, Integer>();
+      int n = 0;
+      for (int block = 0; block < set.length; block++) {
+         if (set[block] == 0) {
+            continue;
+         }
+         for (int i = 0; i < rows.length; i++) {
+            for (long rest = rows[i][block] & set[block]; rest != 0; rest &= rest - 1) {
+               blockMasks[Long.numberOfTrailingZeros(rest)] |= 1L << i;
+            }
+         }
+         for (long rest = set[block]; rest != 0; rest &= rest - 1) {
+            int bit = Long.numberOfTrailingZeros(rest);
+            masks[n] = blockMasks[bit];
+            blockMasks[bit] = 0;
+            sizes.merge(masks[n], 1, Integer::sum);
+            n++;
+         }
+      }
+      Map<Long, int[]> families = new HashMap<Long, int[]>();
+      for (Map.Entry<Long, Integer> size : sizes.entrySet()) {
+         families.put(size.getKey(), new int[size.getValue()]);
+         size.setValue(0);
+      }
+      for (int i = 0; i < words.length; i++) {
+         int filled = sizes.get(masks[i]);
+         families.get(masks[i])[filled] = words[i];
+         sizes.put(masks[i], filled + 1);
+      }
+      return families;
+   }
+
+   // post: returns the given guessed letters with the given letter added, in order
+   private static String add(String guessed, char letter) {
+      int i = 0;
+      while (i < guessed.length() && guessed.charAt(i) < letter) {
+         i++;
+      }
+      return guessed.substring(0, i) + letter + guessed.substring(i);
+   }
+
+   // post: returns the given letters as a string, in order
+   private static String key(Set<Character> guessed) {
+      char[] letters = new char[guessed.size()];
+      int i = 0;
+      for (char letter : guessed) {
+         letters[i] = letter;
+         i++;
+      }
+      Arrays.sort(letters);
+      return new String(letters);
+   }
+
+   // This class scores one family of a guess.
+   private class FamilyTask extends RecursiveAction {
+      private static final long serialVersionUID = 1L;
+
+      private HangmanIndex index;    // the words of the game
+      private int[] words;           // the family
+      private long mask;             // positions of the guess in the family
+      private String guessed;        // letters guessed, including the guess
+      private int depth;             // guesses to look ahead
+      private long deadline;         // time (ns) to give up
+      private long score;            // score of the family, once computed
+
+      // post: constructs a task scoring the given family
+      public FamilyTask(HangmanIndex index, int[] words, long mask, String guessed, int depth,
+                        long deadline) {
+         this.index = index;
+         this.words = words;
+         this.mask = mask;
+         this.guessed = guessed;
+         this.depth = depth;
+         this.deadline = deadline;
+      }
+
+      // post: computes the score of the family
+      protected void compute() {
+         score = score(index, words, mask, guessed, depth, deadline);
+      }
+   }
+
+   // This class scores all of the families of a guess in parallel.
+   private static class Evaluation extends RecursiveAction {
+      private static final long serialVersionUID = 1L;
+
+      private List<FamilyTask> tasks;   // the families
+
+      // post: constructs a task running the given tasks
+      public Evaluation(List<FamilyTask> tasks) {
+         this.tasks = tasks;
+      }
+
+      // post: runs the tasks (throws a Timeout if any of them ran out of time)
+      protected void compute() {
+         invokeAll(tasks);
+      }
+   }
+
+   // This class is a position of the search: the words left (numbered by an index),
+   // the letters guessed and the guesses still to look ahead.
+   private static class State {
+      private HangmanIndex index;
+      private int[] words;
+      private String guessed;
+      private int depth;
+      private int hash;
+
+      // post: constructs a state
+      public State(HangmanIndex index, int[] words, String guessed, int depth) {
+         this.index = index;
+         this.words = words;
+         this.guessed = guessed;
+         this.depth = depth;
+         hash = (Arrays.hashCode(words) * 31 + guessed.hashCode()) * 31 + depth;
+      }
+
+      // post: returns true if o is a state with the same index, words, letters and depth
+      public boolean equals(Object o) {
+         if (!(o instanceof State)) {
+            return false;
+         }
+         State other = (State) o;
+         return hash == other.hash && index == other.index && depth == other.depth && guessed.equals(other.guessed)
+                && Arrays.equals(words, other.words);
+      }
+
+      // post: returns a hash code of the state
+      public int hashCode() {
+         return hash;
+      }
+   }
+
+   // This exception ends a search that ran out of time.
+   private static class Timeout extends RuntimeException {
+      private static final long serialVersionUID = 1L;
+
+      // post: constructs the exception without a stack trace, which is never needed
+      public Timeout() {
+         super(null, null, false, false);
+      }
+   }
+}
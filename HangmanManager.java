@@ -1,14 +1,35 @@
 // This class keeps track of the state of the hangman game.
+//    The words are numbered by a HangmanIndex, which can be shared by many
+//    games, and the words being considered are kept as a bitset of their
+//    numbers. A guess splits them into families by the positions of the
+//    guessed letter, as a bitmask, using the bitsets of the index for that
+//    letter. The largest family is kept, unless a HangmanLookahead strategy
+//    is set to choose. The pattern and the set of words are only built when
+//    asked for. Because a family is a 64-bit mask, games are limited to
+//    words of at most MAX_LENGTH (64) letters.
 
 import java.util.*;
 
 public class HangmanManager {
-   private Set<String> words;       // current set of words being considered
+   private HangmanIndex index;      // the words of the dictionary with the length of the game
+   private int length;              // length of the words
+   private long[] current;          // bitset of the numbers of the words being considered
+   private int wordCount;           // the number of words being considered
+   private Set<String> wordSet;     // current set of words being considered (null until asked for)
    private Set<Character> guesses;  // letters that has already been guessed
-   private String pattern;          // current pattern to be displayed
+   private char[] revealed;         // letter shown at each position ('-' if not guessed yet)
+   private String pattern;          // current pattern to be displayed (null until asked for)
    private int guessesLeft;         // the number of guesses the player has left
+   private long[] blockMasks;       // positions of the guessed letter in the words of one long
+   private long[] familyMasks;      // hash table of the families of a guess, by positions
+   private int[] familySizes;       // number of words in each family of the hash table
+   private int[] familySlots;       // slots of the hash table in use
+   private int familyCount;         // the number of families in the hash table
+   private HangmanLookahead lookahead;  // strategy choosing the family (null for the largest)
    
-   // pre : length >= 1 && max >= 0 (throws an IllegalArgumentException if any of
+   public static final int MAX_LENGTH = HangmanIndex.MAX_LENGTH;
+   
+   // pre : 1 <= length <= MAX_LENGTH && max >= 0 (throws an IllegalArgumentException if any of
    //       these is not satisfied);
    //       the dictionay of wrods should not have duplicates (not case-sensitive)
    //       (if has, the duplicates will be ignored)
@@ -16,22 +37,32 @@ public class HangmanManager {
    //       with given length, and the number of wrong guesses the player is allowed
    //       to make.
    public HangmanManager(Collection<String> dictionary, int length, int max) {
-      if (length < 1 || max < 0) {
-         throw new IllegalArgumentException("length: " + length +
-                                            "; max guesses: " + max);
-      }
-      // initialize the set of words
-      words = new TreeSet<String>();
-      for (String word : dictionary) {
-         if (word.length() == length) {
-            words.add(word.toLowerCase());
-         }
+      this(new HangmanIndex(dictionary, length), max);
+   }
+   
+   // pre : max >= 0 (throws an IllegalArgumentException if not)
+   // post: initializes the state of the game with the words of the given index
+   //       and the number of wrong guesses the player is allowed to make.
+   public HangmanManager(HangmanIndex index, int max) {
+      if (max < 0) {
+         throw new IllegalArgumentException("max guesses: " + max);
       }
-      // initialize the pattern to dashes and spaces according to given word length
-      pattern = "-";
-      for (int i = 0; i < length - 1; i++) {
-         pattern = pattern + " -";
+      this.index = index;
+      length = index.length();
+      // initialize the set of words to all of the words of the index
+      wordCount = index.size();
+      current = new long[index.bitsetLength()];
+      Arrays.fill(current, -1L);
+      if (wordCount % 64 != 0) {
+         current[current.length - 1] = (1L << wordCount) - 1;
       }
+      blockMasks = new long[64];
+      familyMasks = new long[16];
+      familySizes = new int[16];
+      familySlots = new int[16];
+      // initialize the pattern to dashes according to given word length
+      revealed = new char[length];
+      Arrays.fill(revealed, '-');
       // initialize the guesses and guessesLeft
       guesses = new TreeSet<Character>();
       guessesLeft = max;
@@ -40,7 +71,21 @@ public class HangmanManager {
    // post: presents the current set of words being considered by the hangmanmanager
    //       (the words will be shown in square brackets and separated by commas)
    public Set<String> words() {
-      return words;
+      if (wordSet == null) {
+         wordSet = new TreeSet<String>();
+         for (int block = 0; block < current.length; block++) {
+            for (long rest = current[block]; rest != 0; rest &= rest - 1) {
+               wordSet.add(index.word(64 * block + Long.numberOfTrailingZeros(rest)));
+            }
+         }
+      }
+      return wordSet;
+   }
+   
+   // post: returns the number of words being considered, which is the number of bits
+   //       of their bitset, without building the set of words
+   public int wordCount() {
+      return wordCount;
    }
    
    // post: returns how many guesses the player has left;
@@ -54,6 +99,12 @@ public class HangmanManager {
       return guesses;
    }
    
+   // post: makes the game choose families with the given lookahead strategy from now
+   //       on, or keep the largest family if it is null
+   public void setLookahead(HangmanLookahead lookahead) {
+      this.lookahead = lookahead;
+   }
+   
    // pre : the current set of words being considered should not be empty
    //       (throws an IllegalStateException otherwise)
    // post: returns the current pattern to be displayed for the hangman game 
@@ -61,9 +112,17 @@ public class HangmanManager {
    //       Letters that have not yet been guessed are displayed as a dash and
    //       all the letters or dashes are separated by spaces without leading or trailing spaces.
    public String pattern() {
-      if (words.isEmpty()) {
+      if (wordCount == 0) {
          throw new IllegalStateException("The set of words is empty.");
       }
+      if (pattern == null) {
+         StringBuilder result = new StringBuilder(2 * length - 1);
+         result.append(revealed[0]);
+         for (int i = 1; i < length; i++) {
+            result.append(' ').append(revealed[i]);
+         }
+         pattern = result.toString();
+      }
       return pattern;
    }
    
@@ -78,7 +137,7 @@ public class HangmanManager {
    //       updates the new set with the most words being considered as well as the new pattern
    //       according to the set of words.
    public int record(char guess) {
-      if (guessesLeft < 1 || words.isEmpty()) {
+      if (guessesLeft < 1 || wordCount == 0) {
          throw new IllegalStateException();
       }
       guess = Character.toLowerCase(guess);
@@ -88,99 +147,179 @@ public class HangmanManager {
       // records the guess of the letter
       guesses.add(guess);
       // updates the set with largest remaining word families and the new pattern of it
-      changePattern(guess);
+      long positions = choose(guess);
+      for (long rest = positions; rest != 0; rest &= rest - 1) {
+         revealed[Long.numberOfTrailingZeros(rest)] = guess;
+      }
+      pattern = null;
+      wordSet = null;
       // updates the number of the guesses left
-      if (!pattern.contains("" + guess)) {
+      if (positions == 0) {
          guessesLeft--;
-         return 0;
       }
-      int occurrences = 0;
-      for (int i = 0; i < pattern.length(); i++) {
-         if (pattern.charAt(i) == guess) {
-            occurrences++;
-         }
-      }
-      return occurrences;
+      return Long.bitCount(positions);
    }
    
    // pre : the letter should be in lower case
    //       (or it may cause confusion when telling whether the word contains the letter)
-   // post: updates the set with largest remaining word families and the new pattern taking
-   //       into account all guesses
-   private void changePattern(char guess) {
-      String guessPattern = guessPattern(guess);
-      String newPattern = "";
-      for (int i = 0; i < pattern.length(); i++) {
-         if (pattern.charAt(i) == '-') {
-            newPattern = newPattern + guessPattern.charAt(i);
-         } else {
-            newPattern = newPattern + pattern.charAt(i);
+   // post: splits the words being considered into families by the positions of the
+   //       guessed letter, keeps only the largest family (of equal ones, the one whose
+   //       pattern comes first alphabetically, where a dash comes before a letter)
+   //       and returns its positions (bit i for position i)
+   private long choose(char guess) {
+      long[][] rows = new long[length][];
+      for (int i = 0; i < length; i++) {
+         rows[i] = index.positions(guess, i);
+      }
+      if (rows[0] == null) {
+         // no word has the letter, so all of them stay
+         return 0;
+      }
+      // the words without the letter, usually most of them, are counted apart;
+      // the positions of the letter in the others are gathered from the bitsets
+      // of each position, 64 words at a time
+      int missing = wordCount;
+      for (int block = 0; block < current.length; block++) {
+         for (long rest = gather(rows, block); rest != 0; rest &= rest - 1) {
+            int bit = Long.numberOfTrailingZeros(rest);
+            count(blockMasks[bit], 1);
+            blockMasks[bit] = 0;
+            missing--;
+         }
+      }
+      if (missing > 0) {
+         count(0, missing);
+      }
+      // at the first position where two patterns differ one has a dash and the other
+      // the letter, so reversed masks compare like patterns (the other way around if
+      // the letter comes before a dash)
+      int best = familySlots[0];
+      for (int i = 1; i < familyCount; i++) {
+         int slot = familySlots[i];
+         int order = Long.compareUnsigned(Long.reverse(familyMasks[slot]),
+                                          Long.reverse(familyMasks[best]));
+         if (guess < '-') {
+            order = -order;
          }
+         if (familySizes[slot] > familySizes[best]
+             || familySizes[slot] == familySizes[best] && order < 0) {
+            best = slot;
+         }
+      }
+      if (lookahead != null && familyCount > 1) {
+         best = familySlots[lookahead(rows, best)];
+      }
+      long positions = familyMasks[best];
+      wordCount = familySizes[best];
+      clearFamilies();
+      // keeps the words with the letter at exactly the chosen positions
+      for (int block = 0; block < current.length; block++) {
+         long kept = current[block];
+         for (int i = 0; i < length; i++) {
+            if ((positions >>> i & 1) != 0) {
+               kept &= rows[i][block];
+            } else {
+               kept &= ~rows[i][block];
+            }
+         }
+         current[block] = kept;
       }
-      pattern = newPattern;
+      return positions;
    }
    
-   // pre : the letter should be in lower case
-   //       (or it may cause confusion when telling whether the word contains the letter)
-   // post: chooses the largest of the remaining word families and
-   //       updates the set of words being considered.
-   //       returns the pattern according to the chosen set of wrods.
-   //       (this pattern only shows whether and where do the words have 
-   //       the current guessed letter, not including previous guess)
-   private String guessPattern(char guess) {
-      Map<String, Set<String>> map = patternOfWords(guess);
-      int max = 0;
-      String guessPattern = pattern;
-      for (String key : map.keySet()) {
-         int size = map.get(key).size();
-         if (size > max) {
-            max = size;
-            guessPattern = key;
-            words = map.get(guessPattern);
+   // post: sets blockMasks[j] to the positions of the guessed letter in the word of bit
+   //       j of the given block of the current words, for the words with the letter,
+   //       and returns the bits of those words
+   private long gather(long[][] rows, int block) {
+      long found = 0;
+      for (int i = 0; i < length; i++) {
+         for (long rest = rows[i][block] & current[block]; rest != 0; rest &= rest - 1) {
+            blockMasks[Long.numberOfTrailingZeros(rest)] |= 1L << i;
          }
+         found |= rows[i][block];
       }
-      return guessPattern;
+      return found & current[block];
    }
    
-   // pre : the letter should be in lower case
-   //       (or it may cause confusion when telling whether the word contains the letter)
-   // post: generates and returns the map with different patterns as keys
-   //       and the set of words with the same pattern as values
-   //       (this pattern only shows whether and where do the words have 
-   //       the current guessed letter, not including previous guess)
-   private Map<String, Set<String>> patternOfWords(char guess) {
-      Map<String, Set<String>> map = new TreeMap<>();
-      for (String word : words) {
-         String key = patternOfWord(guess, word);
-         if (!map.containsKey(key)) {
-            map.put(key, new TreeSet<String>());
+   // pre : the families of the guess are in the hash table and best is the slot of
+   //       the largest
+   // post: lists the words of every family and returns the number (in the order of
+   //       familySlots) of the family the lookahead strategy keeps
+   private int lookahead(long[][] rows, int best) {
+      int[][] families = new int[familyCount][];
+      long[] masks = new long[familyCount];
+      int[] filled = new int[familyCount];
+      int[] family = new int[familyMasks.length];   // family number of each slot
+      int greedy = 0;
+      for (int i = 0; i < familyCount; i++) {
+         int slot = familySlots[i];
+         families[i] = new int[familySizes[slot]];
+         masks[i] = familyMasks[slot];
+         family[slot] = i;
+         if (slot == best) {
+            greedy = i;
          }
-         map.get(key).add(word);
       }
-      return map;
+      for (int block = 0; block < current.length; block++) {
+         gather(rows, block);
+         for (long rest = current[block]; rest != 0; rest &= rest - 1) {
+            int bit = Long.numberOfTrailingZeros(rest);
+            int i = family[slot(familyMasks, familySizes, blockMasks[bit])];
+            families[i][filled[i]] = 64 * block + bit;
+            filled[i]++;
+            blockMasks[bit] = 0;
+         }
+      }
+      return lookahead.choose(index, families, masks, guesses, greedy);
    }
    
-   // pre : the word and the letter should be in lower case
-   //       (or it may cause confusion when telling whether the word contains the letter)
-   // post: generates the pattern of given word with given guessed letter
-   //       (this pattern only shows whether and where does the word have 
-   //       the current guessed letter, not including previous guess)
-   private String patternOfWord(char guess, String word) {
-      String key;
-      // initializes the first character due to the fence problem
-      if (word.charAt(0) == guess) {
-         key = "" + guess;
-      } else {
-         key = "-";
-      }
-      // adds the rest of the fence
-      for (int i = 1; i < word.length(); i++) {
-         if (word.charAt(i) == guess) {
-            key = key + " " + guess;
-         } else {
-            key = key + " -";
-         }
+   // post: counts the given number of words more in the family with the given positions
+   private void count(long mask, int words) {
+      int slot = slot(familyMasks, familySizes, mask);
+      if (familySizes[slot] == 0) {
+         familyMasks[slot] = mask;
+         familySlots[familyCount] = slot;
+         familyCount++;
+      }
+      familySizes[slot] += words;
+      if (2 * familyCount > familyMasks.length) {
+         grow();
+      }
+   }
+   
+   // post: returns the slot of the hash table holding the given positions, or the
+   //       empty slot where they belong
+   private static int slot(long[] masks, int[] sizes, long mask) {
+      long hash = mask * 0x9e3779b97f4a7c15L;
+      int slot = (int) (hash ^ hash >>> 32) & (masks.length - 1);
+      while (sizes[slot] != 0 && masks[slot] != mask) {
+         slot = (slot + 1) & (masks.length - 1);
+      }
+      return slot;
+   }
+   
+   // post: doubles the size of the hash table, keeping the families in it
+   private void grow() {
+      long[] newMasks = new long[2 * familyMasks.length];
+      int[] newSizes = new int[newMasks.length];
+      int[] newSlots = new int[newMasks.length];
+      for (int i = 0; i < familyCount; i++) {
+         int old = familySlots[i];
+         int slot = slot(newMasks, newSizes, familyMasks[old]);
+         newMasks[slot] = familyMasks[old];
+         newSizes[slot] = familySizes[old];
+         newSlots[i] = slot;
+      }
+      familyMasks = newMasks;
+      familySizes = newSizes;
+      familySlots = newSlots;
+   }
+   
+   // post: empties the hash table, clearing only the slots in use
+   private void clearFamilies() {
+      for (int i = 0; i < familyCount; i++) {
+         familySizes[familySlots[i]] = 0;
       }
-      return key;
+      familyCount = 0;
    }
 }
\ No newline at end of file
@@ -0,0 +1,321 @@
+// This class hosts many hangman games at once. The dictionary is indexed once for
+// each word length, and every game of that length shares the index, so a game
+// holds only its guesses, its pattern and the bitset of its current words. Games
+// are played through methods of the server or through a socket, one line for each
+// request and one for each reply:
+//
+//    NEW <length> <max>   OK <game> <pattern>
+//    GUESS <game> <c>     OK <occurrences> <guesses left> <pattern>
+//    WORDS <game>         OK <number of words>
+//    END <game>           OK
+//
+// Patterns are written without their spaces. Anything else, or a request the game
+// refuses, gets ERROR and a message. Every connection is served on its own virtual
+// thread if the Java runtime has them, or on a thread of a cached pool if not, and
+// the games started on a connection end when it closes. The server also measures
+// how long each guess takes and reports the throughput and the 99th percentile
+// latency, and how much heap a game takes, by the growth of the heap as a batch of
+// games is started.
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+public class HangmanServer {
+   private Collection<String> dictionary;             // the words of all of the games
+   private Map<Integer, HangmanIndex> indexes;        // the index of each word length
+   private Map<Long, HangmanManager> games;           // the games being played, by number
+   private AtomicLong nextGame;                       // number of the next game started
+   private ExecutorService executor;                  // runs the connections
+   private AtomicLongArray latencies;                 // histogram of guess times
+   private AtomicLong guessCount;                     // number of guesses recorded
+   private long startTime;                            // time (ns) the server started
+   private Map<Integer, Long> sessionBytes;           // measured heap of a game, by length
+
+   public static final long GIGABYTE = 1L << 30;
+   public static final int MEASURED_SESSIONS = 1000;  // fewest games started to measure their heap
+   public static final long MEASURED_BYTES = 1 << 22; // least heap growth a measurement counts
+
+   private static final int SUB_BUCKETS = 8;          // histogram buckets per power of 2
+
+   // post: constructs a server for games with the words of the given dictionary
+   public HangmanServer(Collection<String> dictionary) {
+      this.dictionary = new ArrayList<String>(dictionary);
+      indexes = new ConcurrentHashMap<Integer, HangmanIndex>();
+      games = new ConcurrentHashMap<Long, HangmanManager>();
+      nextGame = new AtomicLong();
+      executor = newExecutor();
+      latencies = new AtomicLongArray(64 * SUB_BUCKETS);
+      guessCount = new AtomicLong();
+      startTime = System.nanoTime();
+      sessionBytes = new ConcurrentHashMap<Integer, Long>();
+   }
+
+   // pre : 1 <= length <= HangmanIndex.MAX_LENGTH && max >= 0
+   //       (throws an IllegalArgumentException if not)
+   // post: starts a game with words of the given length and the given number of wrong
+   //       guesses allowed; returns the number of the game
+   public long newGame(int length, int max) {
+      HangmanManager game = new HangmanManager(index(length), max);
+      long number = nextGame.getAndIncrement();
+      games.put(number, game);
+      return number;
+   }
+
+   // pre : the game is being played (throws an IllegalArgumentException if not)
+   // post: records a guess in the given game as HangmanManager.record does and
+   //       returns the number of occurrences of the letter
+   public int record(long number, char guess) {
+      HangmanManager game = game(number);
+      long start = System.nanoTime();
+      int occurrences;
+      synchronized (game) {
+         occurrences = game.record(guess);
+      }
+      long time = System.nanoTime() - start;
+      latencies.incrementAndGet(bucket(time));
+      guessCount.incrementAndGet();
+      return occurrences;
+   }
+
+   // pre : the game is being played (throws an IllegalArgumentException if not)
+   // post: returns the pattern of the given game
+   public String pattern(long number) {
+      HangmanManager game = game(number);
+      synchronized (game) {
+         return game.pattern();
+      }
+   }
+
+   // pre : the game is being played (throws an IllegalArgumentException if not)
+   // post: returns how many guesses the player of the given game has left
+   public int guessesLeft(long number) {
+      HangmanManager game = game(number);
+      synchronized (game) {
+         return game.guessesLeft();
+      }
+   }
+
+   // pre : the game is being played (throws an IllegalArgumentException if not)
+   // post: returns the number of words the given game is still considering
+   public int wordCount(long number) {
+      HangmanManager game = game(number);
+      synchronized (game) {
+         return game.wordCount();
+      }
+   }
+
+   // post: ends the given game, if it is being played
+   public void endGame(long number) {
+      games.remove(number);
+   }
+
+   // post: returns the number of games being played
+   public int sessions() {
+      return games.size();
+   }
+
+   // pre : 1 <= length <= HangmanIndex.MAX_LENGTH (throws an IllegalArgumentException if not)
+   // post: returns the number of games of the given length that fit in a gigabyte of
+   //       heap, as measured by sessionBytes
+   public long sessionsPerGigabyte(int length) {
+      return GIGABYTE / sessionBytes(length);
+   }
+
+   // pre : 1 <= length <= HangmanIndex.MAX_LENGTH (throws an IllegalArgumentException if not)
+   // post: returns the heap (bytes) taken by a game of the given length, measured the
+   //       first time it is asked for as the growth of the used heap, after garbage
+   //       collection, while MEASURED_SESSIONS games are started and held (the index
+   //       they share is built before and is not counted); small games are measured
+   //       again, ten times as many at a time, until the heap grows by MEASURED_BYTES,
+   //       so that the noise of other threads doesn't swamp them
+   public long sessionBytes(int length) {
+      HangmanIndex index = index(length);
+      return sessionBytes.computeIfAbsent(length, key -> {
+         int count = MEASURED_SESSIONS;
+         while (true) {
+            long before = usedHeap();
+            List<HangmanManager> held = new ArrayList<HangmanManager>(count);
+            for (int i = 0; i < count; i++) {
+               HangmanManager game = new HangmanManager(index, 1);
+               game.pattern();
+               held.add(game);
+            }
+            long growth = usedHeap() - before;
+            // the list keeps the games alive until the heap is measured
+            if (growth >= MEASURED_BYTES || count >= MEASURED_SESSIONS * 100) {
+               return Math.max(1, growth / held.size());
+            }
+            count *= 10;
+         }
+      });
+   }
+
+   // post: returns the number of guesses recorded per second since the server started
+   public double guessesPerSecond() {
+      return guessCount.get() * 1e9 / Math.max(1, System.nanoTime() - startTime);
+   }
+
+   // pre : 0 < fraction <= 1 (throws an IllegalArgumentException if not)
+   // post: returns a time (ns) that at least the given fraction of the guesses took at
+   //       most, within an eighth, or 0 if there have been no guesses
+   public long latency(double fraction) {
+      if (fraction <= 0 || fraction > 1) {
+         throw new IllegalArgumentException("fraction: " + fraction);
+      }
+      long count = 0;
+      for (int i = 0; i < latencies.length(); i++) {
+         count += latencies.get(i);
+      }
+      long needed = (long) Math.ceil(fraction * count);
+      long seen = 0;
+      for (int i = 0; i < latencies.length(); i++) {
+         seen += latencies.get(i);
+         if (needed > 0 && seen >= needed) {
+            return bucketLimit(i);
+         }
+      }
+      return 0;
+   }
+
+   // post: returns a line reporting the sessions, the sessions of the given length per
+   //       gigabyte, the guesses per second and the 99th percentile latency
+   public String report(int length) {
+      return "sessions: " + sessions() + "; sessions/GB (length " + length + "): "
+             + sessionsPerGigabyte(length) + "; guesses/sec: " + Math.round(guessesPerSecond())
+             + "; p99 latency (us): " + latency(0.99) / 1000.0;
+   }
+
+   // post: accepts connections on the given socket until it is closed, serving each
+   //       one on its own thread
+   public void serve(ServerSocket socket) throws IOException {
+      try {
+         while (true) {
+            Socket connection = socket.accept();
+            executor.execute(() -> serve(connection));
+         }
+      } catch (SocketException e) {
+         // the socket was closed, which ends the server
+      }
+   }
+
+   // post: stops serving connections
+   public void shutdown() {
+      executor.shutdownNow();
+   }
+
+   // post: answers the requests of the given connection until it is closed, then
+   //       ends the games started on it that are still being played
+   private void serve(Socket connection) {
+      Set<Long> started = new HashSet<Long>();
+      try (Socket open = connection;
+           BufferedReader input = new BufferedReader(new InputStreamReader(open.getInputStream()));
+           PrintWriter output = new PrintWriter(new BufferedWriter(
+                                   new OutputStreamWriter(open.getOutputStream())))) {
+         String line = input.readLine();
+         while (line != null) {
+            output.println(answer(line, started));
+            output.flush();
+            line = input.readLine();
+         }
+      } catch (IOException e) {
+         // the client went away
+      } finally {
+         for (long number : started) {
+            endGame(number);
+         }
+      }
+   }
+
+   // post: carries out the given request line and returns the reply line; started
+   //       keeps the games started and not yet ended on the connection
+   private String answer(String line, Set<Long> started) {
+      String[] request = line.trim().split("\\s+");
+      try {
+         if (request[0].equals("NEW") && request.length == 3) {
+            long number = newGame(Integer.parseInt(request[1]), Integer.parseInt(request[2]));
+            started.add(number);
+            return "OK " + number + " " + pattern(number).replace(" ", "");
+         } else if (request[0].equals("GUESS") && request.length == 3
+                    && request[2].length() == 1) {
+            long number = Long.parseLong(request[1]);
+            int occurrences = record(number, request[2].charAt(0));
+            return "OK " + occurrences + " " + guessesLeft(number) + " "
+                   + pattern(number).replace(" ", "");
+         } else if (request[0].equals("WORDS") && request.length == 2) {
+            return "OK " + wordCount(Long.parseLong(request[1]));
+         } else if (request[0].equals("END") && request.length == 2) {
+            long number = Long.parseLong(request[1]);
+            endGame(number);
+            started.remove(number);
+            return "OK";
+         } else {
+            return "ERROR unknown request: " + line;
+         }
+      } catch (RuntimeException e) {
+         return "ERROR " + e;
+      }
+   }
+
+   // post: returns the game with the given number
+   //       (throws an IllegalArgumentException if it is not being played)
+   private HangmanManager game(long number) {
+      HangmanManager game = games.get(number);
+      if (game == null) {
+         throw new IllegalArgumentException("game: " + number);
+      }
+      return game;
+   }
+
+   // post: returns the index of the words of the given length, building it the
+   //       first time it is asked for
+   private HangmanIndex index(int length) {
+      return indexes.computeIfAbsent(length, key -> new HangmanIndex(dictionary, key));
+   }
+
+   // post: returns the bytes of heap in use after garbage collection
+   private static long usedHeap() {
+      Runtime runtime = Runtime.getRuntime();
+      long used = Long.MAX_VALUE;
+      // collections may free more on a second try, so the least of a few is kept
+      for (int i = 0; i < 3; i++) {
+         System.gc();
+         used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+      }
+      return used;
+   }
+
+   // post: returns the histogram bucket of the given time (ns): the power of 2 it is
+   //       below, split into SUB_BUCKETS equal parts
+   private static int bucket(long time) {
+      if (time < SUB_BUCKETS) {
+         return (int) Math.max(0, time);
+      }
+      int power = 63 - Long.numberOfLeadingZeros(time);
+      int part = (int) (time >>> (power - 3)) & (SUB_BUCKETS - 1);
+      return (power - 2) * SUB_BUCKETS + part;
+   }
+
+   // post: returns the largest time (ns) of the given histogram bucket
+   private static long bucketLimit(int bucket) {
+      if (bucket < SUB_BUCKETS) {
+         return bucket;
+      }
+      int power = bucket / SUB_BUCKETS + 2;
+      long part = bucket % SUB_BUCKETS;
+      return ((SUB_BUCKETS + part + 1) << (power - 3)) - 1;
+   }
+
+   // post: returns an executor that runs each task on a new virtual thread, or on a
+   //       cached pool of platform threads if the runtime has no virtual threads
+   private static ExecutorService newExecutor() {
+      try {
+         return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor")
+                                                 .invoke(null);
+      } catch (ReflectiveOperationException e) {
+         return Executors.newCachedThreadPool();
+      }
+   }
+}
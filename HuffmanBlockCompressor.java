@@ -0,0 +1,294 @@
+// This class compresses a stream with Huffman coding in fixed-size blocks, so that
+// counting, encoding and decoding of different blocks can run in parallel. Every
+// block is coded with a canonical Huffman code, either its own or one shared by a
+// batch of blocks. The output is a framed container:
+//
+//    header      : magic number, block size
+//    table       : 'T', then the code length (one byte) of each of the 257 characters
+//    block       : 'B', original length, compressed length, compressed bytes
+//    interleaved : 'I', original length, compressed length of each of the 4
+//                  sub-streams, compressed bytes of the sub-streams
+//    end         : 'E'
+//
+// A block is decoded with the most recent table before it. In an interleaved block,
+// each quarter of the block is coded as a separate sub-stream, so that a decoder
+// can decode the 4 quarters in the same loop and never waits for one lookup to end
+// before starting the next. Compressed bits are packed lowest bit first, as
+// BitOutputStream writes them.
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+public class HuffmanBlockCompressor {
+   private int blockSize;        // number of input bytes in each block
+   private boolean sharedTree;   // true if a batch of blocks shares one tree
+   private boolean interleaved;  // true if blocks are split into 4 sub-streams
+   private ForkJoinPool pool;    // pool that counts, encodes and decodes blocks
+
+   public static final int DEFAULT_BLOCK_SIZE = 1 << 20;
+   public static final int MAGIC = 0x48554642;   // "HUFB"
+
+   private static final int CHARACTERS = 256;
+   private static final int STREAMS = 4;               // sub-streams of an interleaved block
+   private static final int MAX_BLOCK_SIZE = 1 << 30;   // keeps every code within 56 bits
+
+   // post: constructs a compressor with blocks of DEFAULT_BLOCK_SIZE bytes,
+   //       a tree for each block and the common ForkJoinPool
+   public HuffmanBlockCompressor() {
+      this(DEFAULT_BLOCK_SIZE, false, ForkJoinPool.commonPool());
+   }
+
+   // pre : 1 <= blockSize <= 2^30 (throws an IllegalArgumentException if not)
+   // post: constructs a compressor with blocks of the given size that runs on the
+   //       given pool; if sharedTree is true, each batch of blocks compressed together
+   //       shares one tree, otherwise every block has its own tree
+   public HuffmanBlockCompressor(int blockSize, boolean sharedTree, ForkJoinPool pool) {
+      this(blockSize, sharedTree, false, pool);
+   }
+
+   // pre : 1 <= blockSize <= 2^30 (throws an IllegalArgumentException if not)
+   // post: constructs a compressor as above that also splits every block into 4
+   //       interleaved sub-streams if interleaved is true
+   public HuffmanBlockCompressor(int blockSize, boolean sharedTree, boolean interleaved,
+                                 ForkJoinPool pool) {
+      if (blockSize < 1 || blockSize > MAX_BLOCK_SIZE) {
+         throw new IllegalArgumentException("block size: " + blockSize);
+      }
+      this.blockSize = blockSize;
+      this.sharedTree = sharedTree;
+      this.interleaved = interleaved;
+      this.pool = pool;
+   }
+
+   // post: compresses all of the given input and writes the container to the given output
+   public void compress(InputStream input, OutputStream output) throws IOException {
+      DataOutputStream data = new DataOutputStream(new BufferedOutputStream(output));
+      data.writeInt(MAGIC);
+      data.writeInt(blockSize);
+      List<byte[]> blocks = new ArrayList<>();
+      List<Integer> sizes = new ArrayList<>();
+      boolean done = false;
+      while (!done) {
+         // reads a batch of blocks, two for each worker
+         blocks.clear();
+         sizes.clear();
+         while (!done && blocks.size() < 2 * pool.getParallelism()) {
+            byte[] block = new byte[blockSize];
+            int size = input.readNBytes(block, 0, blockSize);
+            if (size > 0) {
+               blocks.add(block);
+               sizes.add(size);
+            }
+            done = size < blockSize;
+         }
+         if (!blocks.isEmpty()) {
+            writeBatch(blocks, sizes, data);
+         }
+      }
+      data.writeByte('E');
+      data.flush();
+   }
+
+   // post: counts, encodes and writes the given blocks in parallel
+   private void writeBatch(List<byte[]> blocks, List<Integer> sizes, DataOutputStream data)
+                                                                        throws IOException {
+      int n = blocks.size();
+      List<Callable<int[]>> counting = new ArrayList<>();
+      for (int i = 0; i < n; i++) {
+         byte[] block = blocks.get(i);
+         int size = sizes.get(i);
+         counting.add(() -> count(block, 0, size));
+      }
+      List<Future<int[]>> counted = pool.invokeAll(counting);
+      int[][] counts = new int[n][];
+      for (int i = 0; i < n; i++) {
+         counts[i] = join(counted.get(i));
+      }
+      CanonicalCode[] codes = new CanonicalCode[n];
+      if (sharedTree) {
+         int[] total = new int[CHARACTERS];
+         for (int[] count : counts) {
+            for (int i = 0; i < CHARACTERS; i++) {
+               total[i] += count[i];
+            }
+         }
+         Arrays.fill(codes, new HuffmanTree2(total, true).canonicalCode());
+      } else {
+         for (int i = 0; i < n; i++) {
+            codes[i] = new HuffmanTree2(counts[i], true).canonicalCode();
+         }
+      }
+      List<Callable<byte[][]>> encoding = new ArrayList<>();
+      for (int i = 0; i < n; i++) {
+         byte[] block = blocks.get(i);
+         int size = sizes.get(i);
+         CanonicalCode code = codes[i];
+         int[] count = counts[i];
+         if (interleaved) {
+            encoding.add(() -> encodeInterleaved(block, size, code));
+         } else {
+            encoding.add(() -> new byte[][] {encode(block, 0, size, code, count)});
+         }
+      }
+      List<Future<byte[][]>> encoded = pool.invokeAll(encoding);
+      for (int i = 0; i < n; i++) {
+         if (i == 0 || codes[i] != codes[i - 1]) {
+            data.writeByte('T');
+            for (int j = 0; j <= CHARACTERS; j++) {
+               data.writeByte(codes[i].length(j));
+            }
+         }
+         byte[][] compressed = join(encoded.get(i));
+         data.writeByte(interleaved ? 'I' : 'B');
+         data.writeInt(sizes.get(i));
+         for (byte[] stream : compressed) {
+            data.writeInt(stream.length);
+         }
+         for (byte[] stream : compressed) {
+            data.write(stream);
+         }
+      }
+   }
+
+   // pre : input holds a container written by compress
+   //       (throws an IOException if it does not start like one)
+   // post: decompresses the given input and writes the original bytes to the given output
+   public void decompress(InputStream input, OutputStream output) throws IOException {
+      DataInputStream data = new DataInputStream(new BufferedInputStream(input));
+      if (data.readInt() != MAGIC) {
+         throw new IOException("not a block-compressed Huffman stream");
+      }
+      data.readInt();
+      HuffmanDecoder decoder = null;
+      List<Callable<byte[]>> decoding = new ArrayList<>();
+      int type = data.readByte();
+      while (type != 'E') {
+         if (type == 'T') {
+            int[] lengths = new int[CHARACTERS + 1];
+            for (int i = 0; i <= CHARACTERS; i++) {
+               lengths[i] = data.readUnsignedByte();
+            }
+            decoder = new HuffmanDecoder(new CanonicalCode(lengths).tree());
+         } else if (type == 'B' && decoder != null) {
+            int size = data.readInt();
+            byte[] compressed = new byte[data.readInt()];
+            data.readFully(compressed);
+            HuffmanDecoder blockDecoder = decoder;
+            decoding.add(() -> {
+               byte[] block = new byte[size];
+               blockDecoder.decode(compressed, 0, compressed.length, block, 0, size);
+               return block;
+            });
+         } else if (type == 'I' && decoder != null) {
+            int size = data.readInt();
+            int[] lengths = new int[STREAMS];
+            int total = 0;
+            for (int i = 0; i < STREAMS; i++) {
+               lengths[i] = data.readInt();
+               total += lengths[i];
+            }
+            byte[] compressed = new byte[total];
+            data.readFully(compressed);
+            HuffmanDecoder blockDecoder = decoder;
+            decoding.add(() -> {
+               byte[] block = new byte[size];
+               blockDecoder.decodeInterleaved(compressed, 0, lengths, block, 0, size);
+               return block;
+            });
+         } else {
+            throw new IOException("bad frame: " + type);
+         }
+         // decodes a batch of blocks, two for each worker
+         if (decoding.size() == 2 * pool.getParallelism()) {
+            writeDecoded(decoding, output);
+         }
+         type = data.readByte();
+      }
+      writeDecoded(decoding, output);
+      output.flush();
+   }
+
+   // post: decodes the given blocks in parallel, writes them to the given output
+   //       in order and clears the list
+   private void writeDecoded(List<Callable<byte[]>> decoding, OutputStream output)
+                                                                        throws IOException {
+      for (Future<byte[]> block : pool.invokeAll(decoding)) {
+         output.write(join(block));
+      }
+      decoding.clear();
+   }
+
+   // post: returns the number of occurrences of each byte value among
+   //       block[from] to block[to - 1]
+   private static int[] count(byte[] block, int from, int to) {
+      int[] count = new int[CHARACTERS];
+      for (int i = from; i < to; i++) {
+         count[block[i] & 0xff]++;
+      }
+      return count;
+   }
+
+   // post: encodes each quarter of the first size bytes of the given block with the
+   //       given code and returns the compressed bytes of the 4 quarters (quarters of
+   //       (size + 3) / 4 bytes, the last one shorter)
+   private static byte[][] encodeInterleaved(byte[] block, int size, CanonicalCode code) {
+      int quarter = (size + STREAMS - 1) / STREAMS;
+      byte[][] result = new byte[STREAMS][];
+      for (int i = 0; i < STREAMS; i++) {
+         int from = Math.min(i * quarter, size);
+         int to = Math.min(from + quarter, size);
+         result[i] = encode(block, from, to, code, count(block, from, to));
+      }
+      return result;
+   }
+
+   // pre : count holds the number of occurrences of each byte value in the range
+   // post: encodes block[from] to block[to - 1] with the given code and
+   //       returns the compressed bytes
+   private static byte[] encode(byte[] block, int from, int to, CanonicalCode code,
+                                int[] count) {
+      long[] bits = new long[CHARACTERS];
+      int[] lengths = new int[CHARACTERS];
+      long total = 0;
+      for (int i = 0; i < CHARACTERS; i++) {
+         lengths[i] = code.length(i);
+         if (lengths[i] > 0) {
+            // the first bit of the code goes out first, so it becomes the lowest bit
+            bits[i] = Long.reverse(code.code(i)) >>> (64 - lengths[i]);
+         }
+         total += (long) count[i] * lengths[i];
+      }
+      byte[] result = new byte[(int) ((total + 7) / 8)];
+      long buffer = 0;
+      int available = 0;
+      int position = 0;
+      for (int i = from; i < to; i++) {
+         int character = block[i] & 0xff;
+         buffer |= bits[character] << available;
+         available += lengths[character];
+         while (available >= 8) {
+            result[position] = (byte) buffer;
+            position++;
+            buffer >>>= 8;
+            available -= 8;
+         }
+      }
+      if (available > 0) {
+         result[position] = (byte) buffer;
+      }
+      return result;
+   }
+
+   // post: waits for and returns the result of the given task
+   private static <T> T join(Future<T> task) throws IOException {
+      try {
+         return task.get();
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw new InterruptedIOException();
+      } catch (ExecutionException e) {
+         throw new IOException(e.getCause());
+      }
+   }
+}
@@ -0,0 +1,337 @@
+// This class decodes Huffman codes with lookup tables instead of walking the tree
+// one bit at a time. The tables are built once from a Huffman tree. Each table is
+// indexed by the next K bits of the input; its entry gives either a whole symbol
+// together with the length of its code, or a sub-table for codes longer than K bits.
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.*;
+
+public class HuffmanDecoder {
+   private int[] table;       // primary table followed by all of the sub-tables
+   private int size;          // number of entries used in the table array
+   private int tableBits;     // number of bits indexed by each table (K)
+
+   public static final int DEFAULT_TABLE_BITS = 10;
+
+   private static final int SUBTABLE = 0x80000000;   // marks an entry pointing to a sub-table
+   private static final int LENGTH_BITS = 5;         // low bits of a symbol entry hold the length
+   private static final int LENGTH_MASK = (1 << LENGTH_BITS) - 1;
+   private static final int BUFFER_SIZE = 1 << 16;   // decoded bytes written to output at once
+
+   // pre : root is the root of a Huffman tree whose leaves have no children
+   // post: constructs a decoder for the given tree with tables indexed by
+   //       DEFAULT_TABLE_BITS bits
+   public HuffmanDecoder(HuffmanNode root) {
+      this(root, DEFAULT_TABLE_BITS);
+   }
+
+   // pre : root is the root of a Huffman tree whose leaves have no children;
+   //       1 <= tableBits <= 16 (throws an IllegalArgumentException if not)
+   // post: constructs a decoder for the given tree with tables indexed by
+   //       the given number of bits
+   public HuffmanDecoder(HuffmanNode root, int tableBits) {
+      if (tableBits < 1 || tableBits > 16) {
+         throw new IllegalArgumentException("table bits: " + tableBits);
+      }
+      this.tableBits = tableBits;
+      table = new int[1 << tableBits];
+      size = 0;
+      build(root);
+   }
+
+   // post: returns the number of bits indexed by each table
+   public int tableBits() {
+      return tableBits;
+   }
+
+   // pre : input stream contains a legal encoding of characters for this tree's Huffman code.
+   // post: decodes the given input, and writes the corresponding integer value of characters to the output.
+   //       the character with value equal to eof parameter means the end of decoding (will not be written)
+   public void decode(BitInputStream input, PrintStream output, int eof) {
+      byte[] buffer = new byte[BUFFER_SIZE];
+      int count = 0;
+      int mask = (1 << tableBits) - 1;
+      long bits = 0;         // buffered input bits, the next bit is the lowest one
+      int available = 0;     // number of buffered input bits
+      int offset = 0;        // offset of the table being looked up
+      while (true) {
+         // the bits after the end of the input read as 0; they are never part of a code
+         while (available < tableBits) {
+            if (input.readBit() > 0) {
+               bits |= 1L << available;
+            }
+            available++;
+         }
+         int entry = table[offset + ((int) bits & mask)];
+         if (entry < 0) {
+            bits >>>= tableBits;
+            available -= tableBits;
+            offset = entry & ~SUBTABLE;
+         } else {
+            int length = entry & LENGTH_MASK;
+            bits >>>= length;
+            available -= length;
+            offset = 0;
+            int code = entry >>> LENGTH_BITS;
+            if (code == eof) {
+               output.write(buffer, 0, count);
+               return;
+            }
+            buffer[count] = (byte) code;
+            count++;
+            if (count == buffer.length) {
+               output.write(buffer, 0, count);
+               count = 0;
+            }
+         }
+      }
+   }
+
+   // pre : input stream contains a legal encoding of characters for this tree's Huffman code.
+   // post: decodes the given input, and writes the corresponding characters to the output
+   //       through a direct buffer that is written out whenever it is full.
+   //       the character with value equal to eof parameter means the end of decoding (will not be written)
+   public void decode(FastBitInputStream input, OutputStream output, int eof) throws IOException {
+      decode(input, output, eof, 8);
+   }
+
+   // pre : input stream contains a legal encoding of characters for this tree's Huffman code;
+   //       symbolBits is 8 or 16
+   // post: decodes the given input, and writes the corresponding characters to the output,
+   //       symbolBits bits each (16-bit symbols big-endian), through a direct buffer that
+   //       is written out whenever it is full.
+   //       the character with value equal to eof parameter means the end of decoding (will not be written)
+   public void decode(FastBitInputStream input, OutputStream output, int eof, int symbolBits)
+                                                                        throws IOException {
+      WritableByteChannel channel = Channels.newChannel(output);
+      ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+      int offset = 0;
+      while (true) {
+         int entry = table[offset + input.peekBits(tableBits)];
+         if (entry < 0) {
+            input.skipBits(tableBits);
+            offset = entry & ~SUBTABLE;
+         } else {
+            input.skipBits(entry & LENGTH_MASK);
+            offset = 0;
+            int code = entry >>> LENGTH_BITS;
+            if (code == eof) {
+               buffer.flip();
+               while (buffer.hasRemaining()) {
+                  channel.write(buffer);
+               }
+               output.flush();
+               return;
+            }
+            if (symbolBits == 8) {
+               buffer.put((byte) code);
+            } else {
+               buffer.putChar((char) code);
+            }
+            if (buffer.remaining() < 2) {
+               buffer.flip();
+               while (buffer.hasRemaining()) {
+                  channel.write(buffer);
+               }
+               buffer.clear();
+            }
+         }
+      }
+   }
+
+   // pre : the next bits of input are a code of this tree
+   // post: reads one code from the given input and returns its character
+   public int decodeSymbol(FastBitInputStream input) {
+      int offset = 0;
+      while (true) {
+         int entry = table[offset + input.peekBits(tableBits)];
+         if (entry >= 0) {
+            input.skipBits(entry & LENGTH_MASK);
+            return entry >>> LENGTH_BITS;
+         }
+         input.skipBits(tableBits);
+         offset = entry & ~SUBTABLE;
+      }
+   }
+
+   // pre : input[start] to input[end - 1] hold at least count codes of this tree,
+   //       packed lowest bit first as BitOutputStream writes them
+   // post: decodes count characters from the given bytes and stores them in output
+   //       starting at the given offset
+   public void decode(byte[] input, int start, int end, byte[] output, int offset, int count) {
+      finish(input, start, end, 0, 0, output, offset, offset + count);
+   }
+
+   // pre : input holds the 4 sub-streams of an interleaved block one after another
+   //       starting at the given position, with the given numbers of bytes; sub-stream
+   //       k holds the codes of the k-th quarter of the block (quarters of
+   //       (count + 3) / 4 characters, the last one shorter)
+   // post: decodes count characters from the given sub-streams and stores them in
+   //       output starting at the given offset
+   public void decodeInterleaved(byte[] input, int start, int[] lengths, byte[] output,
+                                 int offset, int count) {
+      int mask = (1 << tableBits) - 1;
+      int quarter = (count + 3) / 4;
+      int limit = offset + count;
+      // every sub-stream has its own bits and positions in local variables, so that
+      // the lookups of the 4 sub-streams do not depend on each other and can overlap
+      int position0 = start;
+      int end0 = position0 + lengths[0];
+      int position1 = end0;
+      int end1 = position1 + lengths[1];
+      int position2 = end1;
+      int end2 = position2 + lengths[2];
+      int position3 = end2;
+      int end3 = position3 + lengths[3];
+      long bits0 = 0;
+      long bits1 = 0;
+      long bits2 = 0;
+      long bits3 = 0;
+      int available0 = 0;
+      int available1 = 0;
+      int available2 = 0;
+      int available3 = 0;
+      int offset0 = offset;
+      int offset1 = Math.min(offset0 + quarter, limit);
+      int offset2 = Math.min(offset1 + quarter, limit);
+      int offset3 = Math.min(offset2 + quarter, limit);
+      // the last quarter is the shortest, so all 4 have characters left until it ends
+      while (offset3 < limit) {
+         // refills whole bytes; the bytes after the end read as 0
+         while (available0 <= 56) {
+            if (position0 < end0) {
+               bits0 |= (input[position0] & 0xffL) << available0;
+            }
+            position0++;
+            available0 += 8;
+         }
+         while (available1 <= 56) {
+            if (position1 < end1) {
+               bits1 |= (input[position1] & 0xffL) << available1;
+            }
+            position1++;
+            available1 += 8;
+         }
+         while (available2 <= 56) {
+            if (position2 < end2) {
+               bits2 |= (input[position2] & 0xffL) << available2;
+            }
+            position2++;
+            available2 += 8;
+         }
+         while (available3 <= 56) {
+            if (position3 < end3) {
+               bits3 |= (input[position3] & 0xffL) << available3;
+            }
+            position3++;
+            available3 += 8;
+         }
+         int entry0 = table[(int) bits0 & mask];
+         int entry1 = table[(int) bits1 & mask];
+         int entry2 = table[(int) bits2 & mask];
+         int entry3 = table[(int) bits3 & mask];
+         while (entry0 < 0) {
+            bits0 >>>= tableBits;
+            available0 -= tableBits;
+            entry0 = table[(entry0 & ~SUBTABLE) + ((int) bits0 & mask)];
+         }
+         while (entry1 < 0) {
+            bits1 >>>= tableBits;
+            available1 -= tableBits;
+            entry1 = table[(entry1 & ~SUBTABLE) + ((int) bits1 & mask)];
+         }
+         while (entry2 < 0) {
+            bits2 >>>= tableBits;
+            available2 -= tableBits;
+            entry2 = table[(entry2 & ~SUBTABLE) + ((int) bits2 & mask)];
+         }
+         while (entry3 < 0) {
+            bits3 >>>= tableBits;
+            available3 -= tableBits;
+            entry3 = table[(entry3 & ~SUBTABLE) + ((int) bits3 & mask)];
+         }
+         bits0 >>>= entry0 & LENGTH_MASK;
+         bits1 >>>= entry1 & LENGTH_MASK;
+         bits2 >>>= entry2 & LENGTH_MASK;
+         bits3 >>>= entry3 & LENGTH_MASK;
+         available0 -= entry0 & LENGTH_MASK;
+         available1 -= entry1 & LENGTH_MASK;
+         available2 -= entry2 & LENGTH_MASK;
+         available3 -= entry3 & LENGTH_MASK;
+         output[offset0++] = (byte) (entry0 >>> LENGTH_BITS);
+         output[offset1++] = (byte) (entry1 >>> LENGTH_BITS);
+         output[offset2++] = (byte) (entry2 >>> LENGTH_BITS);
+         output[offset3++] = (byte) (entry3 >>> LENGTH_BITS);
+      }
+      // the first 3 quarters may each have one more character than the last
+      int quarter1 = Math.min(offset + quarter, limit);
+      finish(input, position0, end0, bits0, available0, output, offset0, quarter1);
+      finish(input, position1, end1, bits1, available1, output, offset1,
+             Math.min(quarter1 + quarter, limit));
+      finish(input, position2, end2, bits2, available2, output, offset2,
+             Math.min(quarter1 + 2 * quarter, limit));
+   }
+
+   // post: decodes characters from the given bytes, starting with the given bits that
+   //       were already taken from them, and stores them in output from the given
+   //       offset up to limit - 1
+   private void finish(byte[] input, int position, int end, long bits, int available,
+                       byte[] output, int offset, int limit) {
+      int mask = (1 << tableBits) - 1;
+      int tableOffset = 0;
+      while (offset < limit) {
+         // refills whole bytes; the bytes after the end read as 0
+         while (available <= 56) {
+            if (position < end) {
+               bits |= (input[position] & 0xffL) << available;
+            }
+            position++;
+            available += 8;
+         }
+         int entry = table[tableOffset + ((int) bits & mask)];
+         if (entry < 0) {
+            bits >>>= tableBits;
+            available -= tableBits;
+            tableOffset = entry & ~SUBTABLE;
+         } else {
+            int length = entry & LENGTH_MASK;
+            bits >>>= length;
+            available -= length;
+            tableOffset = 0;
+            output[offset] = (byte) (entry >>> LENGTH_BITS);
+            offset++;
+         }
+      }
+   }
+
+   // post: adds a table for the subtree with the given root and fills it;
+   //       returns the offset of the new table
+   private int build(HuffmanNode root) {
+      int offset = size;
+      size += 1 << tableBits;
+      if (size > table.length) {
+         table = Arrays.copyOf(table, Math.max(size, 2 * table.length));
+      }
+      fill(root, 0, 0, offset);
+      return offset;
+   }
+
+   // post: fills the entries of the table at the given offset that start with the
+   //       given path to the given node (the first bit of the path is the lowest one)
+   private void fill(HuffmanNode root, int depth, int path, int offset) {
+      if (root.left == null) {
+         int entry = root.charCode << LENGTH_BITS | depth;
+         for (int i = path; i < 1 << tableBits; i += 1 << depth) {
+            table[offset + i] = entry;
+         }
+      } else if (depth == tableBits) {
+         int subtable = build(root);
+         table[offset + path] = SUBTABLE | subtable;
+      } else {
+         fill(root.left, depth + 1, path, offset);
+         fill(root.right, depth + 1, path | 1 << depth, offset);
+      }
+   }
+}
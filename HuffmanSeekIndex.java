@@ -0,0 +1,123 @@
+// This class keeps checkpoints into a Huffman-compressed stream so that a range of
+// the original bytes can be decoded without decoding everything before it. Every
+// interval original bytes, a checkpoint records the offset of the next original
+// byte and the bit offset of its code in the compressed stream. The index is
+// written next to the compressed stream, not inside it, so the stream itself is
+// unchanged.
+
+import java.io.*;
+import java.util.*;
+
+public class HuffmanSeekIndex {
+   private int interval;      // number of original bytes between checkpoints
+   private long[] bytes;      // original offset of each checkpoint
+   private long[] bits;       // compressed bit offset of each checkpoint
+   private int size;          // number of checkpoints
+
+   public static final int DEFAULT_INTERVAL = 64 * 1024;
+   public static final int MAGIC = 0x48554649;   // "HUFI"
+
+   // post: constructs an empty index with a checkpoint every DEFAULT_INTERVAL bytes
+   public HuffmanSeekIndex() {
+      this(DEFAULT_INTERVAL);
+   }
+
+   // pre : interval >= 1 (throws an IllegalArgumentException if not)
+   // post: constructs an empty index with a checkpoint every interval bytes
+   public HuffmanSeekIndex(int interval) {
+      if (interval < 1) {
+         throw new IllegalArgumentException("interval: " + interval);
+      }
+      this.interval = interval;
+      bytes = new long[16];
+      bits = new long[16];
+      size = 0;
+   }
+
+   // post: returns the number of original bytes between checkpoints
+   public int interval() {
+      return interval;
+   }
+
+   // post: returns the number of checkpoints
+   public int size() {
+      return size;
+   }
+
+   // pre : byteOffset and bitOffset are larger than those of every earlier checkpoint
+   //       (throws an IllegalArgumentException if not)
+   // post: adds a checkpoint: the code of the original byte at byteOffset starts at
+   //       bitOffset of the compressed stream
+   public void add(long byteOffset, long bitOffset) {
+      if (size > 0 && (byteOffset <= bytes[size - 1] || bitOffset < bits[size - 1])) {
+         throw new IllegalArgumentException("checkpoint out of order: " + byteOffset);
+      }
+      if (size == bytes.length) {
+         bytes = Arrays.copyOf(bytes, 2 * size);
+         bits = Arrays.copyOf(bits, 2 * size);
+      }
+      bytes[size] = byteOffset;
+      bits[size] = bitOffset;
+      size++;
+   }
+
+   // pre : offset >= 0 and the index has a checkpoint at offset 0
+   //       (throws an IllegalArgumentException if not)
+   // post: returns the number of the last checkpoint at or before the given offset
+   public int checkpointBefore(long offset) {
+      if (offset < 0 || size == 0 || bytes[0] != 0) {
+         throw new IllegalArgumentException("offset: " + offset);
+      }
+      int low = 0;
+      int high = size - 1;
+      while (low < high) {
+         int middle = (low + high + 1) / 2;
+         if (bytes[middle] <= offset) {
+            low = middle;
+         } else {
+            high = middle - 1;
+         }
+      }
+      return low;
+   }
+
+   // post: returns the original offset of the given checkpoint
+   public long byteOffset(int checkpoint) {
+      return bytes[checkpoint];
+   }
+
+   // post: returns the compressed bit offset of the given checkpoint
+   public long bitOffset(int checkpoint) {
+      return bits[checkpoint];
+   }
+
+   // post: writes the index to the given output
+   public void write(OutputStream output) throws IOException {
+      DataOutputStream data = new DataOutputStream(new BufferedOutputStream(output));
+      data.writeInt(MAGIC);
+      data.writeInt(interval);
+      data.writeInt(size);
+      for (int i = 0; i < size; i++) {
+         data.writeLong(bytes[i]);
+         data.writeLong(bits[i]);
+      }
+      data.flush();
+   }
+
+   // pre : input holds an index written by write
+   //       (throws an IOException if it does not start like one)
+   // post: reads and returns the index
+   public static HuffmanSeekIndex read(InputStream input) throws IOException {
+      DataInputStream data = new DataInputStream(new BufferedInputStream(input));
+      if (data.readInt() != MAGIC) {
+         throw new IOException("not a Huffman seek index");
+      }
+      HuffmanSeekIndex index = new HuffmanSeekIndex(data.readInt());
+      int size = data.readInt();
+      for (int i = 0; i < size; i++) {
+         long byteOffset = data.readLong();
+         index.add(byteOffset, data.readLong());
+      }
+      return index;
+   }
+}
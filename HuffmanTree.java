@@ -6,6 +6,7 @@ import java.util.*;
 
 public class HuffmanTree {
    private HuffmanNode overallRoot;
+   private HuffmanDecoder decoder;    // lookup tables for this tree, built on first use
    
    // pre : count[i] should be the number of character with integer value i
    // post: constructs the initial Huffman tree using the given array of frequencies
@@ -33,6 +34,15 @@ public class HuffmanTree {
       overallRoot = queue.remove();
    }
    
+   // pre : count[i] should be the number of character with integer value i;
+   //       2^maxLength is at least the number of used characters plus one and
+   //       maxLength <= 62 (throws an IllegalArgumentException if not)
+   // post: constructs a Huffman tree with no code longer than maxLength that is
+   //       optimal under that limit (see HuffmanTree2.lengthLimitLoss for what it costs)
+   public HuffmanTree(int[] count, int maxLength) {
+      overallRoot = new CanonicalCode(CanonicalCode.limitedLengths(count, maxLength)).tree();
+   }
+   
    // pre : given file contains a tree stored in standard format
    // post: constructs the Huffman tree from the given file
    public HuffmanTree(Scanner input) {
@@ -106,4 +116,14 @@ public class HuffmanTree {
          }
       } 
    }
+   
+   // pre : input stream contains a legal encoding of characters for this tree's Huffman code.
+   // post: decodes the given input exactly as decode does, but looks up whole codes
+   //       in tables built once for this tree instead of walking the tree bit by bit
+   public void decodeTable(BitInputStream input, PrintStream output, int eof) {
+      if (decoder == null) {
+         decoder = new HuffmanDecoder(overallRoot);
+      }
+      decoder.decode(input, output, eof);
+   }
 }
\ No newline at end of file
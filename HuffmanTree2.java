@@ -2,14 +2,50 @@
 // the bonus assignment writeup.
 
 import java.util.*;
+import java.util.function.*;
 import java.io.*;
+import java.nio.*;
 
 public class HuffmanTree2 {
     private HuffmanNode overallRoot;
+    private HuffmanDecoder decoder;    // lookup tables for this tree, built on first use
+    private CanonicalCode canonical;   // canonical code of this tree (null if not canonical)
+   
+   // Header formats. The standard format writes the tree in preorder: 0 for a
+   // branch, then 1 and the 9-bit value of a leaf. A canonical header is written
+   // as 1 followed by CANONICAL_MARKER, where a standard header would have its lone
+   // leaf; that leaf can only be the pseudo-eof, which is the number of characters.
+   // So the marker is told apart from a leaf only while the pseudo-eof stays below
+   // 511: trees over more than MAX_STANDARD_EOF characters (count.length > 510) are
+   // always canonical, whatever the constructor was asked for, and which of the two
+   // formats a tree is written in depends on its alphabet size as well as on the
+   // canonical flag. A header that ends early is rejected.
+   
+   // 9-bit value following a leading 1 bit that marks a canonical header; a tree
+   // in standard format that starts with a leaf can only be the lone pseudo-eof
+   private static final int CANONICAL_MARKER = 511;
+   
+   // largest pseudo-eof the standard format can hold besides the marker; trees over
+   // more characters are built with two queues and are always canonical
+   private static final int MAX_STANDARD_EOF = 510;
    
    // pre : count[i] should be the number of character with integer value i
    // post: constructs the initial Huffman tree using the given array of frequencies
    public HuffmanTree2(int[] count) {
+      this(count, false);
+   }
+   
+   // pre : count[i] should be the number of character with integer value i
+   // post: constructs the initial Huffman tree using the given array of frequencies;
+   //       if canonical is true, the codes are rearranged into canonical codes of the
+   //       same lengths, and the header is written as the code length of each character
+   //       (trees over more than 510 characters are always canonical)
+   public HuffmanTree2(int[] count, boolean canonical) {
+      if (count.length > MAX_STANDARD_EOF) {
+         this.canonical = new CanonicalCode(CanonicalCode.lengths(buildLinear(count), count.length + 1));
+         overallRoot = this.canonical.tree();
+         return;
+      }
       Queue<HuffmanNode> queue = new PriorityQueue<>();
       int pseudo_eof = count.length;
       int countNode = 0;
@@ -31,18 +67,168 @@ public class HuffmanTree2 {
          queue.add(branch);
       }
       overallRoot = queue.remove();
+      if (canonical) {
+         this.canonical = new CanonicalCode(CanonicalCode.lengths(overallRoot, pseudo_eof + 1));
+         overallRoot = this.canonical.tree();
+      }
    }
    
-   // pre : input has the standard bit representation for the tree.
+   // pre : count[i] should be the number of character with integer value i;
+   //       2^maxLength is at least the number of used characters plus one and
+   //       maxLength <= 62 (throws an IllegalArgumentException if not)
+   // post: constructs a canonical Huffman tree with no code longer than maxLength
+   //       that is optimal under that limit (see lengthLimitLoss for what it costs)
+   public HuffmanTree2(int[] count, int maxLength) {
+      canonical = new CanonicalCode(CanonicalCode.limitedLengths(count, maxLength));
+      overallRoot = canonical.tree();
+   }
+   
+   // pre : count[i] should be the number of character with integer value i;
+   //       2^maxLength is at least the number of used characters plus one and
+   //       maxLength <= 62 (throws an IllegalArgumentException if not)
+   // post: returns the fraction of compressed size lost by limiting codes to maxLength
+   //       bits, compared with the unbounded Huffman tree (0.01 means 1% larger);
+   //       returns 0 if there are no characters to compress
+   public static double lengthLimitLoss(int[] count, int maxLength) {
+      int[] unbounded = CanonicalCode.lengths(new HuffmanTree2(count).overallRoot, count.length + 1);
+      long best = CanonicalCode.encodedBits(count, unbounded);
+      long limited = CanonicalCode.encodedBits(count, CanonicalCode.limitedLengths(count, maxLength));
+      if (best == 0) {
+         return 0;
+      }
+      return (double) (limited - best) / best;
+   }
+   
+   // post: builds and returns the Huffman tree of the given frequencies and the
+   //       pseudo-eof (which counts once) in linear time after sorting, by merging two
+   //       queues that stay in increasing order of frequency: the sorted leaves, and
+   //       the branches in the order they are created
+   private static HuffmanNode buildLinear(int[] count) {
+      int n = 1;
+      for (int c : count) {
+         if (c > 0) {
+            n++;
+         }
+      }
+      // sorts the frequencies with the characters in the low half of each entry
+      long[] sorted = new long[n];
+      int k = 0;
+      for (int i = 0; i < count.length; i++) {
+         if (count[i] > 0) {
+            sorted[k] = (long) count[i] << 32 | i;
+            k++;
+         }
+      }
+      sorted[k] = 1L << 32 | count.length;
+      Arrays.sort(sorted);
+      HuffmanNode[] branches = new HuffmanNode[Math.max(n - 1, 1)];
+      long[] weights = new long[branches.length];
+      int leaf = 0;
+      int front = 0;
+      for (int back = 0; back < n - 1; back++) {
+         HuffmanNode[] pair = new HuffmanNode[2];
+         long sum = 0;
+         for (int j = 0; j < 2; j++) {
+            if (leaf < n && (front == back || sorted[leaf] >>> 32 <= weights[front])) {
+               pair[j] = new HuffmanNode((int) sorted[leaf], (int) (sorted[leaf] >>> 32));
+               sum += sorted[leaf] >>> 32;
+               leaf++;
+            } else {
+               pair[j] = branches[front];
+               sum += weights[front];
+               front++;
+            }
+         }
+         branches[back] = new HuffmanNode(-1, (int) Math.min(sum, Integer.MAX_VALUE), pair[0], pair[1]);
+         weights[back] = sum;
+      }
+      if (n == 1) {
+         return new HuffmanNode(count.length, 1);
+      }
+      return branches[n - 2];
+   }
+   
+   // pre : symbolBits is 8 or 16, and for 16 the number of remaining bytes is even
+   //       (throws an IllegalArgumentException if not)
+   // post: returns the number of occurrences of each symbol in the remaining bytes of
+   //       the given buffer read symbolBits at a time (16-bit symbols big-endian)
+   //       (the position of the buffer is not changed)
+   public static int[] count(ByteBuffer input, int symbolBits) {
+      checkSymbolBits(input, symbolBits);
+      int[] count = new int[1 << symbolBits];
+      if (symbolBits == 8) {
+         for (int i = input.position(); i < input.limit(); i++) {
+            count[input.get(i) & 0xff]++;
+         }
+      } else {
+         ByteBuffer data = input.duplicate().order(ByteOrder.BIG_ENDIAN);
+         for (int i = input.position(); i < input.limit(); i += 2) {
+            count[data.getChar(i)]++;
+         }
+      }
+      return count;
+   }
+   
+   // post: checks that symbolBits is 8 or 16 and that the remaining bytes of the
+   //       given buffer are whole symbols (throws an IllegalArgumentException if not)
+   private static void checkSymbolBits(ByteBuffer input, int symbolBits) {
+      if (symbolBits != 8 && symbolBits != 16) {
+         throw new IllegalArgumentException("symbol bits: " + symbolBits);
+      }
+      if (input.remaining() * 8 % symbolBits != 0) {
+         throw new IllegalArgumentException("bytes: " + input.remaining());
+      }
+   }
+   
+   // pre : input has the standard bit representation for the tree,
+   //       or a canonical header written by writeHeader
+   //       (throws an IllegalArgumentException if the input ends inside the header)
    // post: Constructs a Huffman tree from the given input stream.
    public HuffmanTree2(BitInputStream input) {
-      overallRoot = read2(input);
+      this((IntSupplier) input::readBit);
+   }
+   
+   // pre : input has the standard bit representation for the tree,
+   //       or a canonical header written by writeHeader
+   //       (throws an IllegalArgumentException if the input ends inside the header)
+   // post: Constructs a Huffman tree from the given input stream.
+   public HuffmanTree2(FastBitInputStream input) {
+      this((IntSupplier) input::readBit);
+   }
+   
+   // pre : the given bits start with the standard bit representation for the tree,
+   //       or a canonical header written by writeHeader
+   //       (throws an IllegalArgumentException if they end inside the header)
+   // post: Constructs a Huffman tree from the given bits.
+   private HuffmanTree2(IntSupplier bits) {
+      // every bit of the header is read through input, which refuses the end of
+      // the input (-1) so that a truncated header is not read as 1 bits
+      IntSupplier input = () -> {
+         int bit = bits.getAsInt();
+         if (bit < 0) {
+            throw new IllegalArgumentException("header ends early");
+         }
+         return bit;
+      };
+      if (input.getAsInt() == 0) {
+         overallRoot = new HuffmanNode(-1, -1);
+         overallRoot.left = read2(input);
+         overallRoot.right = read2(input);
+      } else {
+         int charCode = read9(input);
+         if (charCode == CANONICAL_MARKER) {
+            canonical = readCanonical(input);
+            overallRoot = canonical.tree();
+         } else {
+            overallRoot = new HuffmanNode(charCode, -1);
+         }
+      }
    }
    
    // pre : input has the standard bit representation for the tree.
    // post: Constructs a subtree from the given input stream.
-   private HuffmanNode read2(BitInputStream input) {
-      int n = input.readBit();
+   private HuffmanNode read2(IntSupplier input) {
+      int n = input.getAsInt();
       HuffmanNode root = null;
       if (n == 0) {
          root = new HuffmanNode(-1, -1);
@@ -55,6 +241,11 @@ public class HuffmanTree2 {
       return root;
    }
    
+   // post: returns the canonical code of this tree (null if the tree is not canonical)
+   public CanonicalCode canonicalCode() {
+      return canonical;
+   }
+   
    // pre : the array has null values before the method is called.
    // post: Assigns codes for each character of the tree
    public void assign(String[] codes) {
@@ -71,20 +262,189 @@ public class HuffmanTree2 {
       }
    }
 
+   // pre : both arrays are long enough to be indexed by every character of the tree;
+   //       no code is longer than 32 bits (throws an IllegalStateException if not,
+   //       build the tree with a maximum code length to avoid it)
+   // post: records the code of each character as bits, the first bit of the code
+   //       as the lowest one (ready for FastBitOutputStream.writeBits), and its length
+   //       (neither array is changed if an exception is thrown)
+   public void assign(int[] codeBits, byte[] codeLengths) {
+      long[] bits = new long[codeBits.length];
+      byte[] lengths = new byte[codeLengths.length];
+      assign(overallRoot, 0, 0, bits, lengths);
+      for (int i = 0; i < lengths.length; i++) {
+         if (lengths[i] > 32) {
+            throw new IllegalStateException("code of " + i + " is " + lengths[i] + " bits");
+         }
+      }
+      for (int i = 0; i < codeBits.length; i++) {
+         codeBits[i] = (int) bits[i];
+      }
+      System.arraycopy(lengths, 0, codeLengths, 0, lengths.length);
+   }
+
+   // post: returns the codes of the characters up to eof, for the encoders
+   private CodeTable codeTable(int eof) {
+      CodeTable table = new CodeTable();
+      table.bits = new long[eof + 1];
+      table.lengths = new byte[eof + 1];
+      assign(overallRoot, 0, 0, table.bits, table.lengths);
+      return table;
+   }
+
+   // post: records the code of each character of the given subtree, which is reached
+   //       by the given path of the given depth (the first bit of the path is the lowest);
+   //       throws an IllegalStateException for codes longer than 57 bits
+   private void assign(HuffmanNode root, long path, int depth, long[] codeBits, byte[] codeLengths) {
+      if (root.left == null) {
+         codeBits[root.charCode] = path;
+         codeLengths[root.charCode] = (byte) depth;
+      } else if (depth == 57) {
+         throw new IllegalStateException("codes longer than 57 bits");
+      } else {
+         assign(root.left, path, depth + 1, codeBits, codeLengths);
+         assign(root.right, path | 1L << depth, depth + 1, codeBits, codeLengths);
+      }
+   }
+
+   // pre : every byte of the input is a character of the tree
+   // post: reads the given input to its end and writes the code of every byte,
+   //       followed by the code of eof, to the given output
+   public void encode(InputStream input, FastBitOutputStream output, int eof) throws IOException {
+      encode(input, output, eof, null);
+   }
+
+   // pre : every byte of the input is a character of the tree; index is empty or null
+   // post: encodes the given input exactly as encode does and, if index is not null,
+   //       adds a checkpoint to it for every index.interval() bytes, starting at byte 0
+   public void encode(InputStream input, FastBitOutputStream output, int eof,
+                      HuffmanSeekIndex index) throws IOException {
+      CodeTable table = codeTable(eof);
+      byte[] buffer = new byte[1 << 16];
+      long position = 0;
+      long checkpoint = Long.MAX_VALUE;   // offset of the next checkpoint
+      if (index != null) {
+         index.add(0, output.bitsWritten());
+         checkpoint = index.interval();
+      }
+      int n = input.read(buffer);
+      while (n >= 0) {
+         for (int i = 0; i < n; i++) {
+            if (position + i == checkpoint) {
+               index.add(checkpoint, output.bitsWritten());
+               checkpoint += index.interval();
+            }
+            table.write(output, buffer[i] & 0xff);
+         }
+         position += n;
+         n = input.read(buffer);
+      }
+      table.write(output, eof);
+   }
+
+   // pre : every byte of the input is a character of the tree
+   // post: writes the code of every remaining byte of the given buffer, followed by
+   //       the code of eof, to the given output (the position of the buffer is not changed)
+   public void encode(ByteBuffer input, FastBitOutputStream output, int eof) {
+      encode(input, output, eof, 8);
+   }
+
+   // pre : every byte of the input is a character of the tree; index is empty or null
+   // post: encodes the given buffer exactly as encode does and, if index is not null,
+   //       adds a checkpoint to it for every index.interval() bytes, starting at byte 0
+   //       (offsets are counted from the position of the buffer)
+   public void encode(ByteBuffer input, FastBitOutputStream output, int eof,
+                      HuffmanSeekIndex index) {
+      if (index == null) {
+         encode(input, output, eof);
+         return;
+      }
+      CodeTable table = codeTable(eof);
+      int start = input.position();
+      if (start == input.limit()) {
+         index.add(0, output.bitsWritten());
+      }
+      for (int i = start; i < input.limit(); i += index.interval()) {
+         index.add(i - start, output.bitsWritten());
+         int end = (int) Math.min(input.limit(), (long) i + index.interval());
+         for (int j = i; j < end; j++) {
+            table.write(output, input.get(j) & 0xff);
+         }
+      }
+      table.write(output, eof);
+   }
+
+   // pre : symbolBits is 8 or 16, and for 16 the number of remaining bytes is even
+   //       (throws an IllegalArgumentException if not); every symbol of the input
+   //       is a character of the tree
+   // post: writes the code of every remaining symbol of the given buffer, read symbolBits
+   //       at a time (16-bit symbols big-endian), followed by the code of eof, to the
+   //       given output (the position of the buffer is not changed)
+   public void encode(ByteBuffer input, FastBitOutputStream output, int eof, int symbolBits) {
+      checkSymbolBits(input, symbolBits);
+      CodeTable table = codeTable(eof);
+      if (symbolBits == 8) {
+         for (int i = input.position(); i < input.limit(); i++) {
+            table.write(output, input.get(i) & 0xff);
+         }
+      } else {
+         ByteBuffer data = input.duplicate().order(ByteOrder.BIG_ENDIAN);
+         for (int i = input.position(); i < input.limit(); i += 2) {
+            table.write(output, data.getChar(i));
+         }
+      }
+      table.write(output, eof);
+   }
+
+   // pre : every byte of the input is a character of the tree
+   // post: reads the given input to its end and writes the code of every byte,
+   //       followed by the code of eof, to the given output one bit at a time
+   public void encode(InputStream input, BitOutputStream output, int eof) throws IOException {
+      CodeTable table = codeTable(eof);
+      byte[] buffer = new byte[1 << 16];
+      int n = input.read(buffer);
+      while (n >= 0) {
+         for (int i = 0; i < n; i++) {
+            table.write(output, buffer[i] & 0xff);
+         }
+         n = input.read(buffer);
+      }
+      table.write(output, eof);
+   }
+
    // post: writes the current tree to the output stream using the 
-   //       standard bit representation
+   //       standard bit representation (or the code length of each
+   //       character if the tree is canonical)
    public void writeHeader(BitOutputStream output) {
-      writeHeader(overallRoot, output);
+      writeHeader((IntConsumer) output::writeBit);
+   }
+   
+   // post: writes the current tree to the output stream using the 
+   //       standard bit representation (or the code length of each
+   //       character if the tree is canonical)
+   public void writeHeader(FastBitOutputStream output) {
+      writeHeader((IntConsumer) output::writeBit);
+   }
+   
+   // post: writes the current tree as the given bits using the standard
+   //       bit representation (or the code length of each character if
+   //       the tree is canonical)
+   private void writeHeader(IntConsumer output) {
+      if (canonical != null) {
+         writeCanonical(output);
+      } else {
+         writeHeader(overallRoot, output);
+      }
    }
    
    // post: writes the current subtree to the output stream using the 
    //       standard bit representation
-   private void writeHeader(HuffmanNode root, BitOutputStream output) {
+   private void writeHeader(HuffmanNode root, IntConsumer output) {
       if (root.left == null) {
-         output.writeBit(1);
+         output.accept(1);
          write9(output, root.charCode);
       } else {
-         output.writeBit(0);
+         output.accept(0);
          writeHeader(root.left, output);
          writeHeader(root.right, output);
       }
@@ -94,6 +454,10 @@ public class HuffmanTree2 {
    // post: decodes the given input, and writes the corresponding integer value of characters to the output.
    //       the character with value equal to eof parameter means the end of decoding (will not be written)
    public void decode(BitInputStream input, PrintStream output, int eof) {
+      if (canonical != null) {
+         canonical.decode(input, output, eof);
+         return;
+      }
       boolean ok = true;
       HuffmanNode root = overallRoot;
       while (ok) {
@@ -116,13 +480,212 @@ public class HuffmanTree2 {
       } 
    }
 
+   // pre : input stream contains a legal encoding of characters for this tree's Huffman code.
+   // post: decodes the given input exactly as decode does, but looks up whole codes
+   //       in tables built once for this tree instead of walking the tree bit by bit
+   public void decodeTable(BitInputStream input, PrintStream output, int eof) {
+      if (decoder == null) {
+         decoder = new HuffmanDecoder(overallRoot);
+      }
+      decoder.decode(input, output, eof);
+   }
+
+   // pre : input stream contains a legal encoding of characters for this tree's Huffman code.
+   // post: decodes the given input with the lookup tables of this tree, and writes the
+   //       corresponding characters to the output in bulk.
+   //       the character with value equal to eof parameter means the end of decoding (will not be written)
+   public void decode(FastBitInputStream input, OutputStream output, int eof) throws IOException {
+      decode(input, output, eof, 8);
+   }
+
+   // pre : input stream contains a legal encoding of characters for this tree's Huffman code;
+   //       symbolBits is 8 or 16
+   // post: decodes the given input with the lookup tables of this tree, and writes the
+   //       corresponding characters to the output in bulk, symbolBits bits each
+   //       (16-bit symbols big-endian).
+   //       the character with value equal to eof parameter means the end of decoding (will not be written)
+   public void decode(FastBitInputStream input, OutputStream output, int eof, int symbolBits)
+                                                                        throws IOException {
+      if (decoder == null) {
+         decoder = new HuffmanDecoder(overallRoot);
+      }
+      decoder.decode(input, output, eof, symbolBits);
+   }
+
+   // pre : input is the stream that was written while the given index was filled,
+   //       positioned anywhere, and supports seek; offset >= 0 and length >= 0
+   //       (throws an IllegalArgumentException if not)
+   // post: decodes the original bytes from offset to offset + length - 1 (fewer if
+   //       eof comes first) and writes them to the given output; decoding starts at
+   //       the last checkpoint before offset instead of the start of the stream
+   public void decodeRange(FastBitInputStream input, HuffmanSeekIndex index, int eof,
+                           long offset, int length, OutputStream output) throws IOException {
+      if (offset < 0 || length < 0) {
+         throw new IllegalArgumentException("range: " + offset + ", " + length);
+      }
+      if (decoder == null) {
+         decoder = new HuffmanDecoder(overallRoot);
+      }
+      int checkpoint = index.checkpointBefore(offset);
+      input.seek(index.bitOffset(checkpoint));
+      for (long skip = offset - index.byteOffset(checkpoint); skip > 0; skip--) {
+         if (decoder.decodeSymbol(input) == eof) {
+            return;
+         }
+      }
+      byte[] buffer = new byte[Math.min(length, 1 << 16)];
+      int n = 0;
+      for (int i = 0; i < length; i++) {
+         int character = decoder.decodeSymbol(input);
+         if (character == eof) {
+            break;
+         }
+         buffer[n++] = (byte) character;
+         if (n == buffer.length) {
+            output.write(buffer, 0, n);
+            n = 0;
+         }
+      }
+      output.write(buffer, 0, n);
+      output.flush();
+   }
+
+   // post: writes the canonical header: the marker, the pseudo-eof (unless it is 256),
+   //       and the code lengths, either one for every character or only for the used
+   //       characters other than the pseudo-eof (whichever is shorter)
+   private void writeCanonical(IntConsumer output) {
+      int eof = canonical.symbols() - 1;
+      int lengthWidth = bitsFor(canonical.maxLength());
+      // the used characters are listed as gaps from the previous one
+      int used = 0;
+      int sparseBits = 0;
+      int previous = -1;
+      for (int i = 0; i < eof; i++) {
+         if (canonical.length(i) > 0) {
+            used++;
+            sparseBits += 2 * bitsFor(i - previous) - 1 + lengthWidth;
+            previous = i;
+         }
+      }
+      sparseBits += 2 * bitsFor(used + 1) - 1;
+      output.accept(1);
+      write9(output, CANONICAL_MARKER);
+      if (eof == 256) {
+         output.accept(1);
+      } else {
+         output.accept(0);
+         writeBits(output, bitsFor(eof), 5);
+         writeBits(output, eof, bitsFor(eof));
+      }
+      writeBits(output, lengthWidth, 5);
+      if (sparseBits < (eof + 1) * lengthWidth) {
+         output.accept(1);
+         writeGamma(output, used + 1);
+         previous = -1;
+         for (int i = 0; i < eof; i++) {
+            if (canonical.length(i) > 0) {
+               writeGamma(output, i - previous);
+               writeBits(output, canonical.length(i), lengthWidth);
+               previous = i;
+            }
+         }
+      } else {
+         output.accept(0);
+         for (int i = 0; i <= eof; i++) {
+            writeBits(output, canonical.length(i), lengthWidth);
+         }
+      }
+   }
+
+   // pre : input has a canonical header after the marker
+   // post: reads the code lengths and returns the canonical code they describe
+   private CanonicalCode readCanonical(IntSupplier input) {
+      int eof = 256;
+      if (input.getAsInt() == 0) {
+         eof = readBits(input, readBits(input, 5));
+      }
+      int lengthWidth = readBits(input, 5);
+      int[] lengths = new int[eof + 1];
+      if (input.getAsInt() == 1) {
+         int used = readGamma(input) - 1;
+         int previous = -1;
+         long space = 0;    // code space taken, in units of 2^-62
+         for (int i = 0; i < used; i++) {
+            previous += readGamma(input);
+            lengths[previous] = readBits(input, lengthWidth);
+            space += 1L << (62 - lengths[previous]);
+         }
+         // the pseudo-eof takes the rest of the code space
+         lengths[eof] = 62 - Long.numberOfTrailingZeros((1L << 62) - space);
+      } else {
+         for (int i = 0; i <= eof; i++) {
+            lengths[i] = readBits(input, lengthWidth);
+         }
+      }
+      return new CanonicalCode(lengths);
+   }
+
+   // post: returns the number of bits needed to write n (at least 1)
+   private static int bitsFor(int n) {
+      return Math.max(1, 32 - Integer.numberOfLeadingZeros(n));
+   }
+
+   // pre : n >= 1
+   // post: writes n in Elias gamma code: as many 0s as n has bits after
+   //       its highest 1, then the bits of n from the highest one
+   private void writeGamma(IntConsumer output, int n) {
+      int bits = bitsFor(n);
+      for (int i = 1; i < bits; i++) {
+         output.accept(0);
+      }
+      for (int i = bits - 1; i >= 0; i--) {
+         output.accept(n >>> i & 1);
+      }
+   }
+
+   // pre : an integer n has been encoded using writeGamma
+   // post: reads and returns n
+   private int readGamma(IntSupplier input) {
+      int bits = 1;
+      while (input.getAsInt() == 0) {
+         bits++;
+         if (bits > 31) {
+            throw new IllegalArgumentException("gamma code too long");
+         }
+      }
+      int n = 1;
+      for (int i = 1; i < bits; i++) {
+         n = n * 2 + input.getAsInt();
+      }
+      return n;
+   }
+
+   // pre : an integer n has been encoded using writeBits with the same width
+   // post: reads width bits to reconstruct the original integer
+   private int readBits(IntSupplier input, int width) {
+      int sum = 0;
+      for (int i = 0; i < width; i++) {
+         sum |= input.getAsInt() << i;
+      }
+      return sum;
+   }
+
+   // pre : 0 <= n < 2^width
+   // post: writes a width-bit representation of n to the given output stream,
+   //       lowest bit first as write9 does
+   private void writeBits(IntConsumer output, int n, int width) {
+      for (int i = 0; i < width; i++) {
+         output.accept(n >>> i & 1);
+      }
+   }
+
    // pre : an integer n has been encoded using write9 or its equivalent
    // post: reads 9 bits to reconstruct the original integer
-   private int read9(BitInputStream input) {
+   private int read9(IntSupplier input) {
       int multiplier = 1;
       int sum = 0;
       for (int i = 0; i < 9; i++) {
-         sum += multiplier * input.readBit();
+         sum += multiplier * input.getAsInt();
          multiplier = multiplier * 2;
       }
       return sum;
@@ -130,10 +693,30 @@ public class HuffmanTree2 {
 
    // pre : 0 <= n < 512
    // post: writes a 9-bit representation of n to the given output stream
-   private void write9(BitOutputStream output, int n) {
+   private void write9(IntConsumer output, int n) {
       for (int i = 0; i < 9; i++) {
-         output.writeBit(n % 2);
+         output.accept(n % 2);
          n = n / 2;
       }
    }
+
+   // This class holds the code of every character of a tree as bits, the first bit
+   // of the code as the lowest one, and its length.
+   private static class CodeTable {
+      private long[] bits;       // code of each character
+      private byte[] lengths;    // length of the code of each character
+
+      // post: writes the code of the given character to the given output
+      public void write(FastBitOutputStream output, int character) {
+         output.writeBits(bits[character], lengths[character]);
+      }
+
+      // post: writes the code of the given character to the given output, one bit
+      //       at a time
+      public void write(BitOutputStream output, int character) {
+         for (int i = 0; i < lengths[character]; i++) {
+            output.writeBit((int) (bits[character] >>> i & 1));
+         }
+      }
+   }
 }
@@ -0,0 +1,206 @@
+// Class LetterCounter counts the alphabetic letters (a-z, ignoring case) of any
+//       amount of text and builds a LetterInventory from the counts. It reads
+//       characters straight from a CharSequence, a char array, a ByteBuffer of
+//       ASCII or UTF-8 bytes, or a file mapped into memory, without making a
+//       lowercase copy: ASCII characters are looked up in a table and only other
+//       characters go through Character.toLowerCase.
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+
+public class LetterCounter {
+   private long[] counts;     // counts of each letter, then of everything else
+
+   public static final int ALPHABET_NUM = LetterInventory.ALPHABET_NUM;
+
+   private static final int OTHER = ALPHABET_NUM;     // table entry of non-letters
+   private static final byte[] ASCII = new byte[128]; // letter of each ASCII character
+   private static final int WINDOW_SIZE = 1 << 30;    // bytes of a file mapped at once
+
+   static {
+      for (int i = 0; i < ASCII.length; i++) {
+         ASCII[i] = (byte) OTHER;
+      }
+      for (int i = 0; i < ALPHABET_NUM; i++) {
+         ASCII['a' + i] = (byte) i;
+         ASCII['A' + i] = (byte) i;
+      }
+   }
+
+   // post: constructs a counter with no letters counted
+   public LetterCounter() {
+      counts = new long[ALPHABET_NUM + 1];
+   }
+
+   // post: returns the letter (0 for a to 25 for z) of the given character,
+   //       ignoring case, or -1 if it is not a letter from a to z
+   public static int letter(char c) {
+      if (c < 128) {
+         int letter = ASCII[c];
+         return letter == OTHER ? -1 : letter;
+      }
+      char lower = Character.toLowerCase(c);
+      return lower >= 'a' && lower <= 'z' ? lower - 'a' : -1;
+   }
+
+   // post: counts the letters of the given text; returns this counter
+   public LetterCounter add(CharSequence text) {
+      for (int i = 0; i < text.length(); i++) {
+         add(text.charAt(i));
+      }
+      return this;
+   }
+
+   // pre : 0 <= start <= end <= text.length
+   //       (throws an IndexOutOfBoundsException if not)
+   // post: counts the letters of text[start] to text[end - 1]; returns this counter
+   public LetterCounter add(char[] text, int start, int end) {
+      if (start < 0 || start > end || end > text.length) {
+         throw new IndexOutOfBoundsException("range: " + start + ", " + end);
+      }
+      for (int i = start; i < end; i++) {
+         add(text[i]);
+      }
+      return this;
+   }
+
+   // post: counts the letters of the remaining bytes of the given buffer, read as
+   //       UTF-8 (so ASCII too), skipping malformed bytes; returns this counter
+   //       (the position of the buffer is not changed)
+   public LetterCounter add(ByteBuffer bytes) {
+      int end = countUtf8(bytes, bytes.position(), bytes.limit());
+      // an incomplete character at the end is malformed in a whole buffer
+      while (end < bytes.limit()) {
+         end = countUtf8(bytes, end + 1, bytes.limit());
+      }
+      return this;
+   }
+
+   // post: counts the letters of the given file, read as UTF-8 (so ASCII too) by
+   //       mapping it into memory; returns this counter
+   public LetterCounter addFile(String file) throws IOException {
+      try (FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.READ)) {
+         long size = channel.size();
+         long start = 0;
+         while (start < size) {
+            long length = Math.min(WINDOW_SIZE, size - start);
+            ByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+            // a character cut by the end of the window is counted with the next one
+            int end = countUtf8(window, 0, window.limit());
+            if (start + length == size) {
+               while (end < window.limit()) {
+                  end = countUtf8(window, end + 1, window.limit());
+               }
+            }
+            start += end;
+         }
+      }
+      return this;
+   }
+
+   // post: returns the number of letters counted so far
+   public long size() {
+      long size = 0;
+      for (int i = 0; i < ALPHABET_NUM; i++) {
+         size += counts[i];
+      }
+      return size;
+   }
+
+   // pre : the number of letters counted is at most Integer.MAX_VALUE
+   //       (throws an IllegalStateException if not)
+   // post: returns an inventory of the letters counted so far
+   public LetterInventory toInventory() {
+      if (size() > Integer.MAX_VALUE) {
+         throw new IllegalStateException("too many letters: " + size());
+      }
+      int[] letterStock = new int[ALPHABET_NUM];
+      for (int i = 0; i < ALPHABET_NUM; i++) {
+         letterStock[i] = (int) counts[i];
+      }
+      return new LetterInventory(letterStock);
+   }
+
+   // post: counts the given character if it is a letter
+   private void add(char c) {
+      if (c < 128) {
+         counts[ASCII[c]]++;
+      } else {
+         int letter = letter(c);
+         if (letter >= 0) {
+            counts[letter]++;
+         }
+      }
+   }
+
+   // post: counts the letters of bytes[start] to bytes[end - 1] read as UTF-8,
+   //       skipping malformed bytes; stops before a character that does not end
+   //       before end and returns where it stopped
+   private int countUtf8(ByteBuffer bytes, int start, int end) {
+      // ASCII bytes are counted by value, in four tables that each count every fourth
+      // byte, so that equal bytes in a row do not wait for each other's increments;
+      // the letters are picked out of the tables at the end
+      int[] bytes0 = new int[128];
+      int[] bytes1 = new int[128];
+      int[] bytes2 = new int[128];
+      int[] bytes3 = new int[128];
+      int i = start;
+      while (i < end) {
+         // whole words of 8 ASCII bytes at a time
+         while (i + 8 <= end) {
+            long word = bytes.getLong(i);
+            if ((word & 0x8080808080808080L) != 0) {
+               break;
+            }
+            bytes0[(int) word & 0x7f]++;
+            bytes1[(int) (word >>> 8) & 0x7f]++;
+            bytes2[(int) (word >>> 16) & 0x7f]++;
+            bytes3[(int) (word >>> 24) & 0x7f]++;
+            bytes0[(int) (word >>> 32) & 0x7f]++;
+            bytes1[(int) (word >>> 40) & 0x7f]++;
+            bytes2[(int) (word >>> 48) & 0x7f]++;
+            bytes3[(int) (word >>> 56) & 0x7f]++;
+            i += 8;
+         }
+         if (i >= end) {
+            break;
+         }
+         int b = bytes.get(i) & 0xff;
+         if (b < 0x80) {
+            bytes0[b]++;
+            i++;
+         } else {
+            // a lead byte gives the number of continuation bytes that follow it
+            int more = b >= 0xf0 ? 3 : b >= 0xe0 ? 2 : b >= 0xc0 ? 1 : -1;
+            if (more < 0) {
+               i++;    // a continuation byte without a lead byte
+            } else if (i + more >= end) {
+               break;
+            } else {
+               int code = b & (0x3f >> more);
+               int length = 1;
+               while (length <= more && (bytes.get(i + length) & 0xc0) == 0x80) {
+                  code = code << 6 | bytes.get(i + length) & 0x3f;
+                  length++;
+               }
+               if (length > more) {
+                  int lower = Character.toLowerCase(code);
+                  if (lower >= 'a' && lower <= 'z') {
+                     counts[lower - 'a']++;
+                  }
+               }
+               i += length;
+            }
+         }
+      }
+      for (int j = 0; j < ALPHABET_NUM; j++) {
+         int lower = 'a' + j;
+         int upper = 'A' + j;
+         counts[j] += (long) bytes0[lower] + bytes1[lower] + bytes2[lower] + bytes3[lower]
+                    + bytes0[upper] + bytes1[upper] + bytes2[upper] + bytes3[upper];
+      }
+      return i;
+   }
+}
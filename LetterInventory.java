@@ -14,17 +14,27 @@ public class LetterInventory {
    public LetterInventory(String data) {
       letterStock = new int[ALPHABET_NUM];
       size = 0;
-      data = data.toLowerCase();
 
       for (int i = 0; i < data.length(); i++) {
-         char letter = data.charAt(i);
-         if (letter >= 'a' && letter <= 'z') {
-            letterStock[letter - 'a']++;
+         int letter = LetterCounter.letter(data.charAt(i));
+         if (letter >= 0) {
+            letterStock[letter]++;
             size++;
          }
       }
    }
    
+   // pre : letterStock has ALPHABET_NUM non-negative counts whose sum is at most
+   //       Integer.MAX_VALUE
+   // post: constructs an inventory with the given counts (for LetterCounter)
+   LetterInventory(int[] letterStock) {
+      this.letterStock = letterStock;
+      size = 0;
+      for (int count : letterStock) {
+         size += count;
+      }
+   }
+   
    // post: returns the sum of all of the counts in the letter inventory
    public int size() {
       return size;
@@ -47,14 +57,15 @@ public class LetterInventory {
    // post: creates a String representation of the letter inventory
    //       in alphabetical order between square bracket
    public String toString() {
-      String result = "[";
+      StringBuilder result = new StringBuilder(size + 2);
+      result.append('[');
       for (int i = 0; i < letterStock.length; i++) {
          for (int j = 0; j < letterStock[i]; j++) {
-            result += (char) ('a' + i);
+            result.append((char) ('a' + i));
          }
       }
-      result += "]";
-      return result;
+      result.append(']');
+      return result.toString();
    }
    
    // pre : letter shoulde be alphabetic && value should be non-negative
@@ -76,8 +87,9 @@ public class LetterInventory {
    public LetterInventory add(LetterInventory other) {
       LetterInventory result = new LetterInventory("");
       for (int i = 0; i < letterStock.length; i++) {
-         result.set((char) ('a' + i), letterStock[i] + other.letterStock[i]);
+         result.letterStock[i] = letterStock[i] + other.letterStock[i];
       }
+      result.size = size + other.size;
       return result;
    }
    
@@ -87,14 +99,16 @@ public class LetterInventory {
    //       which is the result of subtracting the other inventory
    //       from this inventory
    public LetterInventory subtract(LetterInventory other) {
-      LetterInventory result = new LetterInventory("");
       for (int i = 0; i < letterStock.length; i++) {
          if (letterStock[i] < other.letterStock[i]) {
             return null;
-         } else {
-            result.set((char) ('a' + i), letterStock[i] - other.letterStock[i]);
          }
       }
+      LetterInventory result = new LetterInventory("");
+      for (int i = 0; i < letterStock.length; i++) {
+         result.letterStock[i] = letterStock[i] - other.letterStock[i];
+      }
+      result.size = size - other.size;
       return result;
    }
    
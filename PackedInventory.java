@@ -0,0 +1,151 @@
+// Class PackedInventory keeps track of an inventory of letters of the alphabet
+//       like LetterInventory, but packs the 26 counts into 16-bit lanes of 7 longs
+//       and changes them in place, so that a search can subtract a word, explore
+//       and add the word back without creating any objects. The top bit of every
+//       lane is a guard bit, which lets contains compare all of the lanes of a
+//       long with one subtraction and no branches. The lanes can also be stored in
+//       and compared with a LongBuffer, such as a memory-mapped index.
+
+import java.nio.*;
+import java.util.*;
+
+public class PackedInventory {
+   private long[] lanes;     // count of letter i in bits 16 * (i % 4) of lanes[i / 4]
+   private int size;         // current sum of all counts
+
+   public static final int ALPHABET_NUM = 26;
+   public static final int MAX_COUNT = (1 << 15) - 1;   // largest count of one letter
+   public static final int LONGS = 7;                   // longs holding the lanes
+
+   private static final int LANES = 4;                  // lanes in each long
+   private static final long GUARDS = 0x8000800080008000L;   // guard bit of every lane
+
+   // pre : no letter occurs more than MAX_COUNT times
+   //       (throws an IllegalArgumentException if not)
+   // post: constructs an inventory of the alphabetic letters in the given string,
+   //       ignoring case and any other characters
+   public PackedInventory(String data) {
+      this(new LetterInventory(data));
+   }
+
+   // pre : no letter occurs more than MAX_COUNT times
+   //       (throws an IllegalArgumentException if not)
+   // post: constructs an inventory with the counts of the given inventory
+   public PackedInventory(LetterInventory inventory) {
+      lanes = new long[LONGS];
+      for (int i = 0; i < ALPHABET_NUM; i++) {
+         int count = inventory.get((char) ('a' + i));
+         if (count > MAX_COUNT) {
+            throw new IllegalArgumentException("count: " + count);
+         }
+         lanes[i / LANES] |= (long) count << (16 * (i % LANES));
+      }
+      size = inventory.size();
+   }
+
+   // post: constructs a copy of the given inventory
+   public PackedInventory(PackedInventory other) {
+      lanes = other.lanes.clone();
+      size = other.size;
+   }
+
+   // pre : lanes[offset] to lanes[offset + LONGS - 1] were written by put and hold
+   //       counts whose sum is size
+   // post: constructs an inventory with the counts stored at the given offset
+   public PackedInventory(LongBuffer lanes, int offset, int size) {
+      this.lanes = new long[LONGS];
+      lanes.get(offset, this.lanes);
+      this.size = size;
+   }
+
+   // post: stores the counts of this inventory in lanes[offset] to lanes[offset + LONGS - 1]
+   public void put(LongBuffer lanes, int offset) {
+      lanes.put(offset, this.lanes);
+   }
+
+   // post: returns the sum of all of the counts in the inventory
+   public int size() {
+      return size;
+   }
+
+   // post: check whether the inventory is empty (true if it is empty)
+   public boolean isEmpty() {
+      return size == 0;
+   }
+
+   // pre : letter should be a letter from a to z, in either case
+   //       (throws an IllegalArgumentException if not)
+   // post: returns a count of this letter in the inventory
+   public int get(char letter) {
+      int index = Character.toLowerCase(letter) - 'a';
+      if (index < 0 || index >= ALPHABET_NUM) {
+         throw new IllegalArgumentException("letter: " + letter);
+      }
+      return (int) (lanes[index / LANES] >>> (16 * (index % LANES))) & 0xffff;
+   }
+
+   // post: returns true if every letter occurs in this inventory at least as often
+   //       as in the other inventory (so that the other can be subtracted from this)
+   public boolean contains(PackedInventory other) {
+      // setting the guard bits makes every lane at least 2^15, larger than any count,
+      // so no lane borrows from the next one; a lane of this that is smaller than the
+      // lane of other ends up with its guard bit cleared
+      long borrowed = 0;
+      for (int i = 0; i < LONGS; i++) {
+         borrowed |= ~((lanes[i] | GUARDS) - other.lanes[i]);
+      }
+      return (borrowed & GUARDS) == 0;
+   }
+
+   // pre : lanes[offset] to lanes[offset + LONGS - 1] were written by put
+   // post: returns true if this inventory contains the inventory stored there
+   public boolean contains(LongBuffer lanes, int offset) {
+      long borrowed = 0;
+      for (int i = 0; i < LONGS; i++) {
+         borrowed |= ~((this.lanes[i] | GUARDS) - lanes.get(offset + i));
+      }
+      return (borrowed & GUARDS) == 0;
+   }
+
+   // pre : this contains the other inventory (the counts are undefined otherwise)
+   // post: subtracts the counts of the other inventory from this one
+   public void subtract(PackedInventory other) {
+      for (int i = 0; i < LONGS; i++) {
+         lanes[i] -= other.lanes[i];
+      }
+      size -= other.size;
+   }
+
+   // pre : no count of the sum is larger than MAX_COUNT (the counts are undefined otherwise)
+   // post: adds the counts of the other inventory to this one, undoing a subtract
+   public void add(PackedInventory other) {
+      for (int i = 0; i < LONGS; i++) {
+         lanes[i] += other.lanes[i];
+      }
+      size += other.size;
+   }
+
+   // post: returns true if o is an inventory with the same counts as this one
+   public boolean equals(Object o) {
+      return o instanceof PackedInventory && Arrays.equals(lanes, ((PackedInventory) o).lanes);
+   }
+
+   // post: returns a hash code of the counts of this inventory
+   public int hashCode() {
+      return Arrays.hashCode(lanes);
+   }
+
+   // post: creates a String representation of the letter inventory
+   //       in alphabetical order between square bracket
+   public String toString() {
+      StringBuilder result = new StringBuilder(size + 2);
+      result.append('[');
+      for (int i = 0; i < ALPHABET_NUM; i++) {
+         for (int j = get((char) ('a' + i)); j > 0; j--) {
+            result.append((char) ('a' + i));
+         }
+      }
+      result.append(']');
+      return result.toString();
+   }
+}
@@ -0,0 +1,76 @@
+// Benchmarks for AnagramSolver: searching for anagrams of phrases against a large
+// dictionary, with console output discarded, and for AnagramIndex: building the
+// index, starting a solver from the saved index, and pruning it for a phrase.
+
+package cse143;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import org.openjdk.jmh.annotations.*;
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AnagramBenchmark {
+   @Param({"50000"})
+   public int words;
+
+   @Param({"george bush", "barbara bush"})
+   public String phrase;
+
+   @Param({"2"})
+   public int max;
+
+   private List<String> dictionary;
+   private AnagramSolver solver;
+   private PrintStream console;
+   private AnagramIndex index;
+   private Path indexFile;
+
+   @Setup
+   public void setUp() throws IOException {
+      dictionary = Workloads.words(words);
+      solver = new AnagramSolver(dictionary);
+      console = System.out;
+      System.setOut(Workloads.nullStream());
+      index = AnagramIndex.build(dictionary);
+      indexFile = Files.createTempFile("anagram", ".idx");
+      index.save(indexFile.toString());
+   }
+
+   @TearDown
+   public void tearDown() throws IOException {
+      System.setOut(console);
+      Files.deleteIfExists(indexFile);
+   }
+
+   @Benchmark
+   public void print() {
+      solver.print(phrase, max);
+   }
+
+   @Benchmark
+   public AnagramSolver construct() {
+      return new AnagramSolver(dictionary);
+   }
+
+   @Benchmark
+   public AnagramIndex buildIndex() {
+      return AnagramIndex.build(dictionary);
+   }
+
+   @Benchmark
+   public AnagramSolver constructFromIndex() throws IOException {
+      return new AnagramSolver(AnagramIndex.open(indexFile.toString()));
+   }
+
+   @Benchmark
+   public int[] prune() {
+      return index.prune(new PackedInventory(phrase));
+   }
+}
@@ -0,0 +1,42 @@
+// Benchmarks for AssassinManager: building kill rings of up to a million players and
+// killing the player in the middle of a fresh ring, which scans half of it.
+
+package cse143;
+
+import java.util.*;
+import java.util.concurrent.*;
+import org.openjdk.jmh.annotations.*;
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AssassinBenchmark {
+   @Param({"1000", "1000000"})
+   public int players;
+
+   private List<String> names;
+   private AssassinManager manager;
+
+   @Setup(Level.Trial)
+   public void setUpNames() {
+      names = Workloads.players(players);
+   }
+
+   @Setup(Level.Invocation)
+   public void setUpRing() {
+      manager = new AssassinManager(names);
+   }
+
+   @Benchmark
+   public void kill() {
+      manager.kill(names.get(players / 2));
+   }
+
+   @Benchmark
+   public AssassinManager construct() {
+      return new AssassinManager(names);
+   }
+}
@@ -0,0 +1,45 @@
+// Benchmarks for GrammarSolver: generating sentences of a recursive expression grammar,
+// into an array or streamed in parallel to a writer that discards them, with and
+// without limits on the depth and length of a sentence.
+
+package cse143;
+
+import java.io.*;
+import java.util.concurrent.*;
+import org.openjdk.jmh.annotations.*;
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GrammarBenchmark {
+   @Param({"1000"})
+   public int times;
+
+   private GrammarSolver solver;
+   private GrammarSolver limitedSolver;
+
+   @Setup
+   public void setUp() {
+      solver = new GrammarSolver(Workloads.expressionGrammar());
+      limitedSolver = new GrammarSolver(Workloads.expressionGrammar());
+      limitedSolver.setLimits(20, 200);
+   }
+
+   @Benchmark
+   public String[] generate() {
+      return solver.generate("<e>", times);
+   }
+
+   @Benchmark
+   public String[] generateLimited() {
+      return limitedSolver.generate("<e>", times);
+   }
+
+   @Benchmark
+   public void generateStreamed() throws IOException {
+      solver.generate("<e>", times, Writer.nullWriter(), Workloads.SEED);
+   }
+}
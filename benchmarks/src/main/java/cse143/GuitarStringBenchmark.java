@@ -0,0 +1,43 @@
+// Benchmarks for GuitarString: rendering one second of sound from the 37 strings of
+// the guitar in the assignment, which sums every sample and tics every string.
+
+package cse143;
+
+import java.util.concurrent.*;
+import org.openjdk.jmh.annotations.*;
+
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GuitarStringBenchmark {
+   private GuitarString[] strings;
+
+   public static final int STRINGS = 37;
+   public static final double CONCERT_A = 440.0;
+
+   @Setup(Level.Iteration)
+   public void setUp() {
+      strings = new GuitarString[STRINGS];
+      for (int i = 0; i < STRINGS; i++) {
+         strings[i] = new GuitarString(CONCERT_A * Math.pow(2, (i - 24) / 12.0));
+         strings[i].pluck();
+      }
+   }
+
+   @Benchmark
+   public double renderSecond() {
+      double total = 0;
+      for (int t = 0; t < GuitarString.SAMPLE_RATE; t++) {
+         double sample = 0;
+         for (GuitarString string : strings) {
+            sample += string.sample();
+            string.tic();
+         }
+         total += sample;
+      }
+      return total;
+   }
+}
@@ -0,0 +1,77 @@
+// Benchmarks for HangmanManager: playing whole games of evil hangman against a large
+// dictionary, guessing letters in order of English frequency, with and without an
+// index of the dictionary shared by all of the games, and with a lookahead strategy
+// that spends at most a millisecond on each guess (a new strategy for every game,
+// so that its memo does not carry over from one game to the next).
+
+package cse143;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.*;
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HangmanBenchmark {
+   @Param({"200000"})
+   public int words;
+
+   @Param({"5", "8"})
+   public int length;
+
+   private List<String> dictionary;
+   private HangmanIndex index;
+   private ForkJoinPool pool;
+
+   private static final long BUDGET = 1_000_000;   // time (ns) of a lookahead guess
+
+   private static final String GUESSES = "etaoinshrdlucmfwypvbgkqjxz";
+
+   @Setup
+   public void setUp() throws IOException {
+      dictionary = Workloads.words(words);
+      index = new HangmanIndex(dictionary, length);
+      pool = new ForkJoinPool();
+   }
+
+   @TearDown
+   public void tearDown() {
+      pool.shutdown();
+   }
+
+   @Benchmark
+   public void game(Blackhole blackhole) {
+      play(new HangmanManager(dictionary, length, 26), blackhole);
+   }
+
+   @Benchmark
+   public void gameSharedIndex(Blackhole blackhole) {
+      play(new HangmanManager(index, 26), blackhole);
+   }
+
+   @Benchmark
+   public void gameLookahead(Blackhole blackhole) {
+      HangmanManager game = new HangmanManager(index, 26);
+      game.setLookahead(new HangmanLookahead(3, BUDGET, pool));
+      play(game, blackhole);
+   }
+
+   @Benchmark
+   public HangmanManager construct() {
+      return new HangmanManager(dictionary, length, 26);
+   }
+
+   // post: guesses letters until the game is over
+   private void play(HangmanManager game, Blackhole blackhole) {
+      for (int i = 0; i < GUESSES.length() && game.guessesLeft() > 0; i++) {
+         blackhole.consume(game.record(GUESSES.charAt(i)));
+      }
+      blackhole.consume(game.pattern());
+   }
+}
@@ -0,0 +1,162 @@
+// Benchmarks for the Huffman coding classes: decoding with the tree walk, the lookup
+// tables and the word-buffered bit streams, encoding with String codes and with the
+// primitive code tables, block compression and decompression (with one stream or
+// 4 interleaved sub-streams per block, on a single worker so that the difference
+// comes from one core), decoding a range from the middle with a seek index, and
+// adaptive compression and decompression in a single pass.
+
+package cse143;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.file.*;
+import java.util.concurrent.*;
+import org.openjdk.jmh.annotations.*;
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HuffmanBenchmark {
+   @Param({"synthetic", "text"})
+   public String source;
+
+   @Param({"4194304"})
+   public int size;
+
+   private byte[] data;            // input to compress
+   private HuffmanTree2 tree;      // tree of the input
+   private String[] codes;         // codes of the tree as Strings
+   private byte[] compressed;      // codes of the input followed by the pseudo-eof
+   private Path compressedFile;    // the same bytes in a file, for BitInputStream
+   private PrintStream sink;       // discards decoded output
+   private ForkJoinPool single;    // one worker, for block decompression
+   private byte[] blocks;          // block container with one stream per block
+   private byte[] interleaved;     // block container with 4 sub-streams per block
+   private HuffmanSeekIndex index; // checkpoints into compressed
+   private AdaptiveHuffman codec;  // adaptive codec with the default interval
+   private byte[] adaptive;        // the input compressed by codec
+
+   private static final int EOF = 256;
+   private static final int RANGE = 4096;  // bytes decoded from the middle of the input
+
+   @Setup
+   public void setUp() throws IOException {
+      data = source.equals("text") ? Workloads.textBytes(size) : Workloads.syntheticBytes(size);
+      tree = new HuffmanTree2(HuffmanTree2.count(ByteBuffer.wrap(data), 8));
+      codes = new String[EOF + 1];
+      tree.assign(codes);
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      FastBitOutputStream output = new FastBitOutputStream(bytes);
+      index = new HuffmanSeekIndex();
+      tree.encode(ByteBuffer.wrap(data), output, EOF, index);
+      output.close();
+      compressed = bytes.toByteArray();
+      compressedFile = Files.createTempFile("huffman", ".bin");
+      Files.write(compressedFile, compressed);
+      sink = Workloads.nullStream();
+      single = new ForkJoinPool(1);
+      blocks = compressBlocks(false);
+      interleaved = compressBlocks(true);
+      codec = new AdaptiveHuffman();
+      bytes = new ByteArrayOutputStream();
+      output = new FastBitOutputStream(bytes);
+      codec.compress(new ByteArrayInputStream(data), output);
+      output.close();
+      adaptive = bytes.toByteArray();
+   }
+
+   // post: returns the data compressed in blocks, with 4 sub-streams per block if
+   //       interleaved is true
+   private byte[] compressBlocks(boolean interleaved) throws IOException {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      new HuffmanBlockCompressor(HuffmanBlockCompressor.DEFAULT_BLOCK_SIZE, false,
+                                 interleaved, single)
+         .compress(new ByteArrayInputStream(data), bytes);
+      return bytes.toByteArray();
+   }
+
+   @TearDown
+   public void tearDown() throws IOException {
+      Files.deleteIfExists(compressedFile);
+      single.shutdown();
+   }
+
+   @Benchmark
+   public void decodeTreeWalk() {
+      BitInputStream input = new BitInputStream(compressedFile.toString());
+      tree.decode(input, sink, EOF);
+      input.close();
+   }
+
+   @Benchmark
+   public void decodeTable() {
+      BitInputStream input = new BitInputStream(compressedFile.toString());
+      tree.decodeTable(input, sink, EOF);
+      input.close();
+   }
+
+   @Benchmark
+   public void decodeWordBuffered() throws IOException {
+      FastBitInputStream input = new FastBitInputStream(ByteBuffer.wrap(compressed));
+      tree.decode(input, OutputStream.nullOutputStream(), EOF);
+   }
+
+   @Benchmark
+   public void encodeStrings() throws IOException {
+      FastBitOutputStream output = new FastBitOutputStream(OutputStream.nullOutputStream());
+      for (byte b : data) {
+         String code = codes[b & 0xff];
+         for (int i = 0; i < code.length(); i++) {
+            output.writeBit(code.charAt(i) - '0');
+         }
+      }
+      output.close();
+   }
+
+   @Benchmark
+   public void encodeBulk() throws IOException {
+      FastBitOutputStream output = new FastBitOutputStream(OutputStream.nullOutputStream());
+      tree.encode(ByteBuffer.wrap(data), output, EOF);
+      output.close();
+   }
+
+   @Benchmark
+   public void blockCompress() throws IOException {
+      new HuffmanBlockCompressor().compress(new ByteArrayInputStream(data),
+                                            OutputStream.nullOutputStream());
+   }
+
+   @Benchmark
+   public void blockDecompressSingleStream() throws IOException {
+      new HuffmanBlockCompressor(HuffmanBlockCompressor.DEFAULT_BLOCK_SIZE, false, false, single)
+         .decompress(new ByteArrayInputStream(blocks), OutputStream.nullOutputStream());
+   }
+
+   @Benchmark
+   public void blockDecompressInterleaved() throws IOException {
+      new HuffmanBlockCompressor(HuffmanBlockCompressor.DEFAULT_BLOCK_SIZE, false, true, single)
+         .decompress(new ByteArrayInputStream(interleaved), OutputStream.nullOutputStream());
+   }
+
+   @Benchmark
+   public void decodeRange() throws IOException {
+      FastBitInputStream input = new FastBitInputStream(ByteBuffer.wrap(compressed));
+      tree.decodeRange(input, index, EOF, size / 2, RANGE, OutputStream.nullOutputStream());
+   }
+
+   @Benchmark
+   public void adaptiveCompress() throws IOException {
+      FastBitOutputStream output = new FastBitOutputStream(OutputStream.nullOutputStream());
+      codec.compress(new ByteArrayInputStream(data), output);
+      output.close();
+   }
+
+   @Benchmark
+   public void adaptiveDecompress() throws IOException {
+      FastBitInputStream input = new FastBitInputStream(ByteBuffer.wrap(adaptive));
+      codec.decompress(input, OutputStream.nullOutputStream());
+   }
+}
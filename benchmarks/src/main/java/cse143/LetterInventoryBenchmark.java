@@ -0,0 +1,60 @@
+// Benchmarks for counting the letters of a large text: with the LetterInventory
+// constructor, and with LetterCounter reading a String, the bytes of the text and
+// the text mapped from a file.
+
+package cse143;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.concurrent.*;
+import org.openjdk.jmh.annotations.*;
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LetterInventoryBenchmark {
+   @Param({"4194304"})
+   public int size;
+
+   private byte[] bytes;       // the text as bytes
+   private String text;        // the same text as a String
+   private Path textFile;      // the same bytes in a file, for addFile
+
+   @Setup
+   public void setUp() throws IOException {
+      bytes = Workloads.textBytes(size);
+      text = new String(bytes, StandardCharsets.UTF_8);
+      textFile = Files.createTempFile("letters", ".txt");
+      Files.write(textFile, bytes);
+   }
+
+   @TearDown
+   public void tearDown() throws IOException {
+      Files.deleteIfExists(textFile);
+   }
+
+   @Benchmark
+   public LetterInventory inventory() {
+      return new LetterInventory(text);
+   }
+
+   @Benchmark
+   public LetterInventory counterString() {
+      return new LetterCounter().add(text).toInventory();
+   }
+
+   @Benchmark
+   public LetterInventory counterBytes() {
+      return new LetterCounter().add(ByteBuffer.wrap(bytes)).toInventory();
+   }
+
+   @Benchmark
+   public LetterInventory counterFile() throws IOException {
+      return new LetterCounter().addFile(textFile.toString()).toInventory();
+   }
+}
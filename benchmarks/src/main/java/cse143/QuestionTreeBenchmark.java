@@ -0,0 +1,41 @@
+// Benchmarks for QuestionTree: reading and writing question files in standard format.
+
+package cse143;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import org.openjdk.jmh.annotations.*;
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QuestionTreeBenchmark {
+   @Param({"1000", "100000"})
+   public int questions;
+
+   private String file;
+   private QuestionTree tree;
+   private PrintStream sink;
+
+   @Setup
+   public void setUp() {
+      file = Workloads.questionFile(questions);
+      tree = new QuestionTree();
+      tree.read(new Scanner(file));
+      sink = Workloads.nullStream();
+   }
+
+   @Benchmark
+   public void read() {
+      tree.read(new Scanner(file));
+   }
+
+   @Benchmark
+   public void write() {
+      tree.write(sink);
+   }
+}
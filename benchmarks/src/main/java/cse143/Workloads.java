@@ -0,0 +1,143 @@
+// This class builds the reproducible inputs shared by the benchmarks. Every
+// generator uses a fixed seed, so two runs measure exactly the same work. Real
+// inputs can be used instead through system properties:
+//
+//    -Dcorpus=<file>       text to compress with Huffman coding
+//    -Ddictionary=<file>   word list (one word per line) for anagrams and hangman
+
+package cse143;
+
+import java.io.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+
+public class Workloads {
+   public static final long SEED = 143;
+
+   // letter frequencies of English text (a-z), used to generate words
+   private static final double[] LETTER_WEIGHTS = {
+      8.2, 1.5, 2.8, 4.3, 12.7, 2.2, 2.0, 6.1, 7.0, 0.15, 0.77, 4.0, 2.4,
+      6.7, 7.5, 1.9, 0.095, 6.0, 6.3, 9.1, 2.8, 0.98, 2.4, 0.15, 2.0, 0.074
+   };
+
+   // post: returns size bytes whose values follow a rounded normal distribution
+   //       around 100 with standard deviation 20 (a smooth, moderately skewed source)
+   public static byte[] syntheticBytes(int size) {
+      Random random = new Random(SEED);
+      byte[] data = new byte[size];
+      for (int i = 0; i < size; i++) {
+         data[i] = (byte) Math.max(0, Math.min(255, (int) (100 + 20 * random.nextGaussian())));
+      }
+      return data;
+   }
+
+   // post: returns size bytes of text: the file named by the corpus property repeated
+   //       as often as needed, or generated English-like sentences if it is not set
+   public static byte[] textBytes(int size) throws IOException {
+      String corpus = System.getProperty("corpus");
+      byte[] source;
+      if (corpus != null) {
+         source = Files.readAllBytes(Paths.get(corpus));
+      } else {
+         StringBuilder text = new StringBuilder();
+         List<String> words = words(5000);
+         Random random = new Random(SEED);
+         while (text.length() < size) {
+            int length = 5 + random.nextInt(15);
+            for (int i = 0; i < length; i++) {
+               // a few common words make most of the text, as in natural language
+               int index = (int) Math.min(words.size() - 1, Math.abs(random.nextGaussian()) * 300);
+               text.append(i == 0 ? "" : " ").append(words.get(index));
+            }
+            text.append(".\n");
+         }
+         source = text.toString().getBytes(StandardCharsets.US_ASCII);
+      }
+      byte[] data = new byte[size];
+      for (int i = 0; i < size; i += source.length) {
+         System.arraycopy(source, 0, data, i, Math.min(source.length, size - i));
+      }
+      return data;
+   }
+
+   // post: returns count distinct lowercase words: the first lines of the file named by
+   //       the dictionary property, or generated words with English letter frequencies
+   //       and lengths from 2 to 12
+   public static List<String> words(int count) throws IOException {
+      String dictionary = System.getProperty("dictionary");
+      if (dictionary != null) {
+         List<String> lines = Files.readAllLines(Paths.get(dictionary));
+         return lines.subList(0, Math.min(count, lines.size()));
+      }
+      Random random = new Random(SEED);
+      double total = 0;
+      for (double weight : LETTER_WEIGHTS) {
+         total += weight;
+      }
+      Set<String> words = new LinkedHashSet<>();
+      while (words.size() < count) {
+         int length = 2 + Math.min(10, (int) Math.abs(random.nextGaussian() * 4));
+         StringBuilder word = new StringBuilder();
+         for (int i = 0; i < length; i++) {
+            double pick = random.nextDouble() * total;
+            int letter = 0;
+            while (pick > LETTER_WEIGHTS[letter]) {
+               pick -= LETTER_WEIGHTS[letter];
+               letter++;
+            }
+            word.append((char) ('a' + letter));
+         }
+         words.add(word.toString());
+      }
+      return new ArrayList<>(words);
+   }
+
+   // post: returns the lines of an arithmetic expression grammar whose expansions
+   //       nest deeply now and then but always terminate (on average an <e> leads
+   //       to 0.6 more <e>s, through parentheses)
+   public static List<String> expressionGrammar() {
+      return Arrays.asList(
+         "<e>::=<t>|<t>|<t> + <e>|<t> - <e>",
+         "<t>::=<f>|<f>|<f> * <t>",
+         "<f>::=<n>|<v>|<n>|<v>|( <e> )|- <f>",
+         "<n>::=0|1|2|3|4|5|6|7|8|9",
+         "<v>::=x|y|z"
+      );
+   }
+
+   // post: returns a question tree file in standard format with the given number of
+   //       questions, balanced so that its depth is about log2 of that number
+   public static String questionFile(int questions) {
+      StringBuilder file = new StringBuilder();
+      questionFile(0, questions, file);
+      return file.toString();
+   }
+
+   // post: appends a subtree for the questions numbered from low to high - 1
+   private static void questionFile(int low, int high, StringBuilder file) {
+      if (low == high) {
+         file.append("A:\nobject ").append(low).append('\n');
+      } else {
+         int middle = (low + high) / 2;
+         file.append("Q:\nis it question ").append(middle).append("?\n");
+         questionFile(low, middle, file);
+         questionFile(middle + 1, high, file);
+      }
+   }
+
+   // post: returns the names player0, player1, ... for the given number of players
+   public static List<String> players(int count) {
+      List<String> names = new ArrayList<>(count);
+      for (int i = 0; i < count; i++) {
+         names.add("player" + i);
+      }
+      return names;
+   }
+
+   // post: returns a print stream that discards everything, to keep console output
+   //       out of the measurements
+   public static PrintStream nullStream() {
+      return new PrintStream(OutputStream.nullOutputStream());
+   }
+}
@@ -0,0 +1,102 @@
+// Tests for AdaptiveHuffman: round trips through the course bit streams and the
+// word-buffered ones in every combination, and that compressing leaves the output
+// open with every byte already written to it.
+
+package cse143;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.file.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.*;
+
+public class AdaptiveHuffmanTest {
+   @TempDir
+   Path directory;
+
+   @Test
+   public void roundTripsThroughTheWordBufferedStreams() throws IOException {
+      for (int interval : new int[] {1, 7, AdaptiveHuffman.DEFAULT_INTERVAL}) {
+         AdaptiveHuffman codec = new AdaptiveHuffman(interval);
+         // a tree every character is slow to build, so it gets less input
+         int size = interval == 1 ? 2000 : 50_000;
+         byte[] data = HuffmanBlockCompressorTest.skewedBytes(size, interval);
+         assertArrayEquals(data, decompressFast(codec, compressFast(codec, data)));
+      }
+   }
+
+   @Test
+   public void roundTripsThroughTheCourseStreams() throws IOException {
+      AdaptiveHuffman codec = new AdaptiveHuffman(1000);
+      byte[] data = HuffmanBlockCompressorTest.skewedBytes(30_000, 41);
+      byte[] compressed = compressCourse(codec, data);
+      Path file = Files.write(directory.resolve("compressed"), compressed);
+      BitInputStream input = new BitInputStream(file.toString());
+      ByteArrayOutputStream output = new ByteArrayOutputStream();
+      codec.decompress(input, output);
+      input.close();
+      assertArrayEquals(data, output.toByteArray());
+   }
+
+   @Test
+   public void bothStreamsWriteTheSameBytes() throws IOException {
+      AdaptiveHuffman codec = new AdaptiveHuffman(500);
+      byte[] data = HuffmanBlockCompressorTest.skewedBytes(20_000, 42);
+      byte[] fast = compressFast(codec, data);
+      assertArrayEquals(fast, compressCourse(codec, data));
+      assertArrayEquals(data, decompressFast(codec, compressCourse(codec, data)));
+   }
+
+   @Test
+   public void roundTripsEmptyInput() throws IOException {
+      AdaptiveHuffman codec = new AdaptiveHuffman();
+      assertArrayEquals(new byte[0], decompressFast(codec, compressFast(codec, new byte[0])));
+   }
+
+   @Test
+   public void leavesTheOutputOpenWithEveryByteWritten() throws IOException {
+      boolean[] closed = new boolean[1];
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream() {
+         public void close() {
+            closed[0] = true;
+         }
+      };
+      AdaptiveHuffman codec = new AdaptiveHuffman();
+      byte[] data = HuffmanBlockCompressorTest.skewedBytes(10_001, 43);
+      codec.compress(new ByteArrayInputStream(data), new FastBitOutputStream(bytes));
+      assertFalse(closed[0]);
+      assertArrayEquals(data, decompressFast(codec, bytes.toByteArray()));
+   }
+
+   @Test
+   public void rejectsABadInterval() {
+      assertThrows(IllegalArgumentException.class, () -> new AdaptiveHuffman(0));
+   }
+
+   // post: returns the given data compressed through a word-buffered stream, without
+   //       closing the stream
+   private static byte[] compressFast(AdaptiveHuffman codec, byte[] data) throws IOException {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      codec.compress(new ByteArrayInputStream(data), new FastBitOutputStream(bytes));
+      return bytes.toByteArray();
+   }
+
+   // post: returns the given data compressed through the course BitOutputStream
+   private byte[] compressCourse(AdaptiveHuffman codec, byte[] data) throws IOException {
+      Path file = directory.resolve("course");
+      BitOutputStream output = new BitOutputStream(file.toString());
+      codec.compress(new ByteArrayInputStream(data), output);
+      output.close();
+      return Files.readAllBytes(file);
+   }
+
+   // post: returns the given bytes decompressed through a word-buffered stream
+   private static byte[] decompressFast(AdaptiveHuffman codec, byte[] compressed)
+         throws IOException {
+      ByteArrayOutputStream output = new ByteArrayOutputStream();
+      codec.decompress(new FastBitInputStream(ByteBuffer.wrap(compressed)), output);
+      return output.toByteArray();
+   }
+}
@@ -0,0 +1,85 @@
+// Tests for AnagramIndex: an index built from a word list, and the same index
+// saved and opened again from a mapped file, must give back every word and its
+// letters, prune exactly the words that fit a phrase, and make a solver print
+// what one built from the list prints.
+
+package cse143;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.*;
+
+public class AnagramIndexTest {
+   @TempDir
+   Path directory;
+
+   @Test
+   public void savedIndexGivesBackTheWords() throws IOException {
+      List<String> words = new ArrayList<>(Workloads.words(5000));
+      // anagrams of each other share a group; case, accents and other characters
+      // are kept in the words but not counted as letters
+      words.addAll(List.of("Listen", "silent", "enlist", "tinsel", "caf\u00e9", "Zo\u00eb",
+                           "o'clock", "x-ray"));
+      AnagramIndex built = AnagramIndex.build(words);
+      Path file = directory.resolve("words.idx");
+      built.save(file.toString());
+      AnagramIndex opened = AnagramIndex.open(file.toString());
+      for (AnagramIndex index : List.of(built, opened)) {
+         assertEquals(words.size(), index.size());
+         for (int i = 0; i < words.size(); i++) {
+            assertEquals(words.get(i), index.word(i));
+            assertEquals(new PackedInventory(words.get(i)), index.letters(i), words.get(i));
+            assertEquals(new PackedInventory(words.get(i)).size(), index.letters(i).size());
+         }
+      }
+   }
+
+   @Test
+   public void prunesExactlyTheWordsThatFit() throws IOException {
+      List<String> words = Workloads.words(5000);
+      AnagramIndex index = AnagramIndex.build(words);
+      Random random = new Random(121);
+      for (int trial = 0; trial < 200; trial++) {
+         StringBuilder phrase = new StringBuilder();
+         for (int i = random.nextInt(20); i >= 0; i--) {
+            phrase.append(words.get(random.nextInt(words.size()))).append(' ');
+         }
+         PackedInventory rest = new PackedInventory(phrase.toString());
+         List<Integer> expected = new ArrayList<>();
+         for (int i = 0; i < words.size(); i++) {
+            if (rest.contains(new PackedInventory(words.get(i)))) {
+               expected.add(i);
+            }
+         }
+         int[] pruned = index.prune(rest);
+         assertEquals(expected.size(), pruned.length, phrase.toString());
+         for (int i = 0; i < pruned.length; i++) {
+            assertEquals((int) expected.get(i), pruned[i]);
+         }
+      }
+   }
+
+   @Test
+   public void solverOnAnOpenedIndexPrintsTheSame() throws IOException {
+      List<String> words = Workloads.words(20_000);
+      Path file = directory.resolve("solver.idx");
+      AnagramIndex.build(words).save(file.toString());
+      AnagramSolver fromList = new AnagramSolver(words);
+      AnagramSolver fromFile = new AnagramSolver(AnagramIndex.open(file.toString()));
+      for (String phrase : new String[] {"george", "barbara bush"}) {
+         String expected = AnagramSolverTest.printed(() -> fromList.print(phrase, 3));
+         assertFalse(expected.isEmpty());
+         assertEquals(expected, AnagramSolverTest.printed(() -> fromFile.print(phrase, 3)));
+      }
+   }
+
+   @Test
+   public void refusesFilesThatAreNotAnIndex() throws IOException {
+      Path file = Files.write(directory.resolve("other"), new byte[64]);
+      assertThrows(IllegalArgumentException.class, () -> AnagramIndex.open(file.toString()));
+   }
+}
@@ -0,0 +1,155 @@
+// Tests for AnagramSolver: the parallel search must print the same anagrams as
+// the sequential one, in the same order when asked for and in any order when not,
+// on pools of any size, and the memo its tasks share must find most subtrees
+// without changing what is printed. The stream of solutions must give what print
+// prints, and only as far as it is consumed. The search that branches on the
+// rarest letter must find the same anagrams, in print order when asked for.
+
+package cse143;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.*;
+import org.junit.jupiter.api.*;
+
+public class AnagramSolverTest {
+   // phrases with the largest number of words of their anagrams (0 for no limit),
+   // which have from a few dozen to about ten thousand anagrams
+   private static final String[] PHRASES = {"george", "tonya", "george bush", "george bush",
+                                            "barbara bush"};
+   private static final int[] MAX = {0, 0, 2, 3, 3};
+
+   private static AnagramSolver solver;
+
+   @BeforeAll
+   public static void setUp() throws IOException {
+      solver = new AnagramSolver(Workloads.words(20_000));
+   }
+
+   @Test
+   public void parallelSearchPrintsWhatPrintDoes() {
+      for (int i = 0; i < PHRASES.length; i++) {
+         String phrase = PHRASES[i];
+         int max = MAX[i];
+         String expected = printed(() -> solver.print(phrase, max));
+         assertFalse(expected.isEmpty(), phrase);
+         for (int threads : new int[] {1, 4}) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+               String ordered = printed(() -> solver.print(phrase, max, pool, true));
+               assertEquals(expected, ordered, phrase + ", " + max + ", " + threads);
+               String unordered = printed(() -> solver.print(phrase, max, pool, false));
+               assertEquals(sortedLines(expected), sortedLines(unordered),
+                            phrase + ", " + max + ", " + threads);
+            } finally {
+               pool.shutdown();
+            }
+         }
+      }
+   }
+
+   @Test
+   public void parallelSearchOfNothing() {
+      ForkJoinPool pool = new ForkJoinPool(2);
+      try {
+         assertEquals(printed(() -> solver.print("", 0)),
+                      printed(() -> solver.print("", 0, pool, true)));
+         assertEquals("", printed(() -> solver.print("qqqq", 0, pool, true)));
+      } finally {
+         pool.shutdown();
+      }
+   }
+
+   @Test
+   public void sharedMemoFindsMostSubtrees() throws IOException {
+      AnagramSolver remembering = new AnagramSolver(Workloads.words(20_000));
+      String expected = printed(() -> remembering.print("george bush", 3));
+      assertTrue(remembering.memoHitRate() > 0.5, "hit rate: " + remembering.memoHitRate());
+      ForkJoinPool pool = new ForkJoinPool(4);
+      try {
+         assertEquals(expected, printed(() -> remembering.print("george bush", 3, pool, true)));
+         assertTrue(remembering.memoHitRate() > 0.5, "hit rate: " + remembering.memoHitRate());
+         // a memo too small for most subtrees still finds some
+         remembering.setMemoSize(10);
+         assertEquals(expected, printed(() -> remembering.print("george bush", 3, pool, true)));
+         assertTrue(remembering.memoHitRate() > 0, "hit rate: " + remembering.memoHitRate());
+         remembering.setMemoSize(0);
+         assertEquals(expected, printed(() -> remembering.print("george bush", 3, pool, true)));
+         assertEquals(0, remembering.memoHitRate());
+      } finally {
+         pool.shutdown();
+      }
+   }
+
+   @Test
+   public void streamGivesWhatPrintPrints() {
+      for (int i = 0; i < PHRASES.length; i++) {
+         String phrase = PHRASES[i];
+         int max = MAX[i];
+         String expected = printed(() -> solver.print(phrase, max));
+         assertEquals(expected, lines(solver.solutions(phrase, max)), phrase + ", " + max);
+      }
+      assertEquals(0, solver.solutions("qqqq", 0).count());
+      assertThrows(IllegalArgumentException.class, () -> solver.solutions("george", -1));
+   }
+
+   @Test
+   public void streamStopsWhereItIsConsumed() {
+      // "george bush" has almost two million anagrams without a limit on the words,
+      // which the stream must not find before giving the first ones
+      String letters = new LetterInventory("george bush").toString();
+      List<List<String>> first = assertTimeoutPreemptively(Duration.ofSeconds(5),
+         () -> solver.solutions("george bush", 0).limit(100).collect(Collectors.toList()));
+      assertEquals(100, first.size());
+      for (List<String> solution : first) {
+         assertEquals(letters, new LetterInventory(String.join("", solution)).toString());
+      }
+      assertEquals(first.get(0), solver.solutions("george bush", 0).findFirst().get());
+   }
+
+   @Test
+   public void rarestLetterSearchFindsWhatPrintDoes() {
+      for (int i = 0; i < PHRASES.length; i++) {
+         String phrase = PHRASES[i];
+         int max = MAX[i];
+         String expected = printed(() -> solver.print(phrase, max));
+         assertEquals(expected, lines(solver.solutions(phrase, max, true)), phrase + ", " + max);
+         assertEquals(sortedLines(expected), sortedLines(lines(solver.solutions(phrase, max, false))),
+                      phrase + ", " + max);
+      }
+      assertEquals(0, solver.solutions("qqqq", 0, true).count());
+      assertThrows(IllegalArgumentException.class, () -> solver.solutions("george", -1, true));
+   }
+
+   // post: returns the given solutions as print prints them
+   static String lines(Stream<List<String>> solutions) {
+      StringBuilder result = new StringBuilder();
+      solutions.forEach(solution -> result.append(solution).append(System.lineSeparator()));
+      return result.toString();
+   }
+
+   // post: returns what the given action prints to System.out
+   static String printed(Runnable action) {
+      PrintStream console = System.out;
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      System.setOut(new PrintStream(bytes, true));
+      try {
+         action.run();
+      } finally {
+         System.out.flush();
+         System.setOut(console);
+      }
+      return bytes.toString();
+   }
+
+   // post: returns the lines of the given text, sorted
+   static List<String> sortedLines(String text) {
+      List<String> lines = new ArrayList<>(Arrays.asList(text.split(System.lineSeparator())));
+      Collections.sort(lines);
+      return lines;
+   }
+}
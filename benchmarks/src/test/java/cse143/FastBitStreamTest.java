@@ -0,0 +1,195 @@
+// Tests for FastBitOutputStream and FastBitInputStream: bits written in runs of
+// every length, across the boundaries of the 64-bit accumulators and of the
+// buffers, must read back from a buffer, a file and a stream, in the same order
+// as the course bit streams, and seek must land on any bit.
+
+package cse143;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.file.*;
+import java.util.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.*;
+
+public class FastBitStreamTest {
+   @TempDir
+   Path directory;
+
+   @Test
+   public void runsOfEveryLengthReadBack() throws IOException {
+      BitSet expected = new BitSet();
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      FastBitOutputStream output = new FastBitOutputStream(bytes);
+      long size = writeRuns(output, expected, new Random(91), 200_000);
+      assertEquals(size, output.bitsWritten());
+      output.close();
+      byte[] written = bytes.toByteArray();
+      assertEquals((size + 7) / 8, written.length);
+
+      assertReadsBack(new FastBitInputStream(ByteBuffer.wrap(written)), expected, size);
+      Path file = Files.write(directory.resolve("bits"), written);
+      assertReadsBack(new FastBitInputStream(file.toString()), expected, size);
+      // a stream that gives a few bytes at a time ends its reads anywhere in a word
+      InputStream trickle = new FilterInputStream(new ByteArrayInputStream(written)) {
+         public int read(byte[] b, int off, int len) throws IOException {
+            return super.read(b, off, Math.min(len, 13));
+         }
+      };
+      assertReadsBack(new FastBitInputStream(trickle), expected, size);
+   }
+
+   @Test
+   public void runsEndingOnWordBoundaries() throws IOException {
+      // 57 + 7 fills the accumulator exactly, and then it starts again from empty
+      int[] lengths = {57, 7, 32, 32, 1, 6, 57, 0, 7, 33, 31};
+      BitSet expected = new BitSet();
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      FastBitOutputStream output = new FastBitOutputStream(bytes);
+      Random random = new Random(92);
+      long size = 0;
+      for (int round = 0; round < 100; round++) {
+         for (int length : lengths) {
+            long code = random.nextLong() & (1L << length) - 1;
+            output.writeBits(code, length);
+            record(expected, size, code, length);
+            size += length;
+         }
+      }
+      output.close();
+      assertReadsBack(new FastBitInputStream(ByteBuffer.wrap(bytes.toByteArray())), expected, size);
+   }
+
+   @Test
+   public void writesWhatTheCourseStreamWrites() throws IOException {
+      Random random = new Random(93);
+      int[] bits = new int[100_003];
+      for (int i = 0; i < bits.length; i++) {
+         bits[i] = random.nextInt(2);
+      }
+      Path course = directory.resolve("course");
+      BitOutputStream slow = new BitOutputStream(course.toString());
+      Path fast = directory.resolve("fast");
+      FastBitOutputStream quick = new FastBitOutputStream(fast.toString());
+      for (int bit : bits) {
+         slow.writeBit(bit);
+         quick.writeBit(bit);
+      }
+      slow.close();
+      quick.close();
+      assertArrayEquals(Files.readAllBytes(course), Files.readAllBytes(fast));
+
+      BitInputStream input = new BitInputStream(fast.toString());
+      FastBitInputStream fastInput = new FastBitInputStream(course.toString());
+      for (int i = 0; i < bits.length; i++) {
+         assertEquals(bits[i], input.readBit(), "bit " + i);
+         assertEquals(bits[i], fastInput.readBit(), "bit " + i);
+      }
+      input.close();
+      fastInput.close();
+   }
+
+   @Test
+   public void seeksToAnyBit() throws IOException {
+      BitSet expected = new BitSet();
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      FastBitOutputStream output = new FastBitOutputStream(bytes);
+      long size = writeRuns(output, expected, new Random(94), 100_000);
+      output.close();
+      byte[] written = bytes.toByteArray();
+      Path file = Files.write(directory.resolve("seek"), written);
+      FastBitInputStream buffer = new FastBitInputStream(ByteBuffer.wrap(written));
+      FastBitInputStream mapped = new FastBitInputStream(file.toString());
+      Random random = new Random(95);
+      for (int i = 0; i < 1000; i++) {
+         long bit = i < 2 ? i * (size - 1) : (long) (random.nextDouble() * size);
+         for (FastBitInputStream input : List.of(buffer, mapped)) {
+            input.seek(bit);
+            assertEquals(bit, input.bitsRead());
+            int n = (int) Math.min(32, size - bit);
+            int value = input.readBits(n);
+            for (int j = 0; j < n; j++) {
+               assertEquals(expected.get((int) bit + j) ? 1 : 0, value >>> j & 1,
+                            "bit " + (bit + j));
+            }
+         }
+      }
+      mapped.close();
+      FastBitInputStream stream = new FastBitInputStream(new ByteArrayInputStream(written));
+      assertThrows(UnsupportedOperationException.class, () -> stream.seek(0));
+      assertThrows(IllegalArgumentException.class, () -> buffer.seek(-1));
+   }
+
+   @Test
+   public void refusesBadBits() {
+      FastBitOutputStream output = new FastBitOutputStream(new ByteArrayOutputStream());
+      assertThrows(IllegalArgumentException.class, () -> output.writeBit(2));
+      assertThrows(IllegalArgumentException.class, () -> output.writeBit(-1));
+   }
+
+   // post: writes random runs of 0 to 57 bits until at least the given number of
+   //       bits are written, records them in expected and returns their number
+   private static long writeRuns(FastBitOutputStream output, BitSet expected, Random random,
+                                 long bits) {
+      long size = 0;
+      while (size < bits) {
+         int length = random.nextInt(58);
+         long code = random.nextLong() & (1L << length) - 1;
+         if (length == 1 && random.nextBoolean()) {
+            output.writeBit((int) code);
+         } else {
+            output.writeBits(code, length);
+         }
+         record(expected, size, code, length);
+         size += length;
+      }
+      return size;
+   }
+
+   // post: records the lowest length bits of code at the given bit of expected
+   private static void record(BitSet expected, long at, long code, int length) {
+      for (int i = 0; i < length; i++) {
+         expected.set((int) at + i, (code >>> i & 1) != 0);
+      }
+   }
+
+   // post: checks that the given input reads the given bits, in runs of every
+   //       length read with readBit, readBits and peekBits/skipBits, then only
+   //       the padding of the last byte and then -1
+   private static void assertReadsBack(FastBitInputStream input, BitSet expected, long size)
+         throws IOException {
+      Random random = new Random(96);
+      long at = 0;
+      while (at < size) {
+         int n = (int) Math.min(1 + random.nextInt(32), size - at);
+         int value;
+         switch (random.nextInt(3)) {
+            case 0:
+               value = 0;
+               for (int j = 0; j < n; j++) {
+                  value |= input.readBit() << j;
+               }
+               break;
+            case 1:
+               value = input.readBits(n);
+               break;
+            default:
+               value = input.peekBits(n);
+               input.skipBits(n);
+         }
+         for (int j = 0; j < n; j++) {
+            assertEquals(expected.get((int) at + j) ? 1 : 0, value >>> j & 1, "bit " + (at + j));
+         }
+         at += n;
+         assertEquals(at, input.bitsRead());
+      }
+      while (at % 8 != 0) {
+         assertEquals(0, input.readBit());
+         at++;
+      }
+      assertEquals(-1, input.readBit());
+      input.close();
+   }
+}
@@ -0,0 +1,162 @@
+// Tests for the depth and length limits of GrammarSolver: every element generated
+// must fit both limits, a derivation must never run out of rules once it has
+// started, and grammars with no element that fits must be refused up front.
+
+package cse143;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.nio.charset.*;
+import java.util.*;
+import java.util.concurrent.*;
+import org.junit.jupiter.api.*;
+
+public class GrammarSolverTest {
+   private static final List<String> EXPRESSIONS = List.of(
+      "<e>::=<e> + <e>|( <e> )|<n>",
+      "<n>::=1|22|333");
+
+   @Test
+   public void picksOnlyRulesThatFitBothLimitsAtOnce() {
+      // <a> can finish within depth 3 (through <p>) or length 6 (through <q>, <r>),
+      // but not both, so only z fits
+      GrammarSolver solver = new GrammarSolver(List.of(
+         "<s>::=<a>|z", "<a>::=<p>|<q>", "<p>::=x x x x x", "<q>::=<r>", "<r>::=y"));
+      solver.setLimits(3, 6);
+      for (String element : solver.generate("<s>", 10_000)) {
+         assertEquals("z", element);
+      }
+      solver.setLimits(4, 6);
+      Set<String> seen = new TreeSet<String>(Arrays.asList(solver.generate("<s>", 10_000)));
+      assertEquals(Set.of("y", "z"), seen);
+      solver.setLimits(3, GrammarSolver.UNLIMITED);
+      seen = new TreeSet<String>(Arrays.asList(solver.generate("<s>", 10_000)));
+      assertEquals(Set.of("x x x x x", "z"), seen);
+   }
+
+   @Test
+   public void elementsStayWithinTheDepthLimit() {
+      GrammarSolver solver = new GrammarSolver(List.of("<e>::=( <e> )|<e> <e>|x"));
+      for (int depth = 1; depth <= 8; depth++) {
+         solver.setLimits(depth, GrammarSolver.UNLIMITED);
+         for (String element : solver.generate("<e>", 500)) {
+            assertTrue(nesting(element) <= depth - 1, depth + ": " + element);
+         }
+      }
+   }
+
+   @Test
+   public void elementsStayWithinBothLimits() {
+      GrammarSolver solver = new GrammarSolver(EXPRESSIONS);
+      Random random = new Random(31);
+      for (int i = 0; i < 500; i++) {
+         int depth = 2 + random.nextInt(10);
+         int length = 1 + random.nextInt(40);
+         solver.setLimits(depth, length);
+         for (String element : solver.generate("<e>", 50)) {
+            assertTrue(element.length() <= length, length + ": " + element);
+            assertTrue(nesting(element) <= depth - 2, depth + ": " + element);
+         }
+      }
+   }
+
+   @Test
+   public void refusesLimitsThatNoElementFits() {
+      GrammarSolver solver = new GrammarSolver(EXPRESSIONS);
+      solver.setLimits(1, GrammarSolver.UNLIMITED);
+      assertThrows(IllegalStateException.class, () -> solver.generate("<e>", 1));
+      solver.setLimits(GrammarSolver.UNLIMITED, 0);
+      assertThrows(IllegalStateException.class, () -> solver.generate("<e>", 1));
+      solver.setLimits(2, 1);
+      assertArrayEquals(new String[] {"1"}, solver.generate("<e>", 1));
+      assertThrows(IllegalArgumentException.class, () -> solver.setLimits(0, 10));
+      assertThrows(IllegalArgumentException.class, () -> solver.setLimits(10, -1));
+   }
+
+   @Test
+   public void generatesNothingWithoutCheckingTheLimits() {
+      GrammarSolver solver = new GrammarSolver(EXPRESSIONS);
+      solver.setLimits(1, GrammarSolver.UNLIMITED);
+      assertArrayEquals(new String[0], solver.generate("<e>", 0));
+      GrammarSolver endless = new GrammarSolver(List.of("<t>::=<t> b"));
+      assertArrayEquals(new String[0], endless.generate("<t>", 0));
+      assertThrows(IllegalArgumentException.class, () -> endless.generate("<u>", 0));
+      assertThrows(IllegalArgumentException.class, () -> endless.generate("<t>", -1));
+   }
+
+   @Test
+   public void refusesNonterminalsThatNeverFinish() {
+      GrammarSolver solver = new GrammarSolver(List.of("<s>::=<t>|a", "<t>::=<t> b"));
+      assertThrows(IllegalStateException.class, () -> solver.generate("<t>", 1));
+      // without limits, the rule that never finishes is still never picked
+      for (String element : solver.generate("<s>", 1000)) {
+         assertEquals("a", element);
+      }
+   }
+
+   @Test
+   public void streamedElementsFollowTheLimitsAndTheSeed() throws IOException {
+      GrammarSolver solver = new GrammarSolver(EXPRESSIONS);
+      solver.setLimits(6, 20);
+      StringWriter first = new StringWriter();
+      solver.generate("<e>", 10_000, first, 42);
+      StringWriter second = new StringWriter();
+      solver.generate("<e>", 10_000, second, 42);
+      assertEquals(first.toString(), second.toString());
+      String[] lines = first.toString().split("\n");
+      assertEquals(10_000, lines.length);
+      for (String line : lines) {
+         assertTrue(line.length() <= 20, line);
+         assertTrue(nesting(line) <= 4, line);
+      }
+      solver.setLimits(1, 20);
+      assertThrows(IllegalStateException.class,
+                   () -> solver.generate("<e>", 10, new StringWriter(), 42));
+   }
+
+   @Test
+   public void streamedElementsDoNotDependOnThePool() throws IOException {
+      // more chunks than either pool has workers, so that some wait to be written
+      long times = 20L * GrammarSolver.CHUNK_SIZE + 17;
+      String expected = null;
+      for (int threads : new int[] {1, 4}) {
+         ForkJoinPool pool = new ForkJoinPool(threads);
+         try {
+            GrammarSolver solver = new GrammarSolver(EXPRESSIONS, pool);
+            solver.setLimits(8, 40);
+            StringWriter text = new StringWriter();
+            solver.generate("<e>", times, text, 143);
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            solver.generate("<e>", times, bytes, 143);
+            assertEquals(text.toString(), bytes.toString(StandardCharsets.UTF_8));
+            if (expected == null) {
+               expected = text.toString();
+            }
+            assertEquals(expected, text.toString(), "threads: " + threads);
+         } finally {
+            pool.shutdown();
+         }
+      }
+      GrammarSolver common = new GrammarSolver(EXPRESSIONS);
+      common.setLimits(8, 40);
+      StringWriter text = new StringWriter();
+      common.generate("<e>", times, text, 143);
+      assertEquals(expected, text.toString());
+   }
+
+   // post: returns the greatest number of parentheses open at once in the given text
+   private static int nesting(String text) {
+      int open = 0;
+      int most = 0;
+      for (int i = 0; i < text.length(); i++) {
+         if (text.charAt(i) == '(') {
+            open++;
+            most = Math.max(most, open);
+         } else if (text.charAt(i) == ')') {
+            open--;
+         }
+      }
+      return most;
+   }
+}
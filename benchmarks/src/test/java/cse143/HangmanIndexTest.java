@@ -0,0 +1,103 @@
+// Tests for HangmanIndex: the words numbered in alphabetical order, in lower case
+// and without duplicates, the bitset of every letter and position, the limits on
+// the word length, and games sharing one index across threads playing as games
+// with their own dictionaries do.
+
+package cse143;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import org.junit.jupiter.api.*;
+
+public class HangmanIndexTest {
+   private static List<String> dictionary;
+
+   @BeforeAll
+   public static void setUp() throws IOException {
+      dictionary = Workloads.words(20_000);
+   }
+
+   @Test
+   public void numbersTheWordsInOrder() {
+      List<String> words = List.of("tub", "Bat", "bat", "TAB", "be", "bats", "cat");
+      HangmanIndex index = new HangmanIndex(words, 3);
+      assertEquals(3, index.length());
+      assertEquals(4, index.size());
+      assertEquals(List.of("bat", "cat", "tab", "tub"), wordsOf(index));
+      assertEquals(1, index.bitsetLength());
+      assertArrayEquals(new char[] {'a', 'b', 'c', 't', 'u'}, index.letters());
+   }
+
+   @Test
+   public void keepsTheWordsOfEveryLetterAndPosition() {
+      for (int length = 1; length <= 12; length++) {
+         HangmanIndex index = new HangmanIndex(dictionary, length);
+         TreeSet<String> expected = new TreeSet<>();
+         for (String word : dictionary) {
+            if (word.length() == length) {
+               expected.add(word.toLowerCase());
+            }
+         }
+         assertEquals(new ArrayList<>(expected), wordsOf(index));
+         assertEquals((index.size() + 63) / 64, index.bitsetLength());
+         for (char letter = 'a'; letter <= 'z'; letter++) {
+            for (int i = 0; i < length; i++) {
+               long[] bitset = index.positions(letter, i);
+               for (int id = 0; id < index.size(); id++) {
+                  boolean has = index.word(id).charAt(i) == letter;
+                  boolean set = bitset != null && (bitset[id >>> 6] & 1L << id) != 0;
+                  assertEquals(has, set, index.word(id) + " " + letter + " " + i);
+               }
+            }
+         }
+      }
+   }
+
+   @Test
+   public void limitsTheWordLength() {
+      assertThrows(IllegalArgumentException.class, () -> new HangmanIndex(dictionary, 0));
+      assertThrows(IllegalArgumentException.class,
+                   () -> new HangmanIndex(dictionary, HangmanIndex.MAX_LENGTH + 1));
+      String longest = "ab".repeat(HangmanIndex.MAX_LENGTH / 2);
+      HangmanIndex index = new HangmanIndex(List.of(longest, longest + "a"),
+                                            HangmanIndex.MAX_LENGTH);
+      assertEquals(List.of(longest), wordsOf(index));
+      HangmanManager game = new HangmanManager(index, 3);
+      assertEquals(HangmanIndex.MAX_LENGTH / 2, game.record('b'));
+   }
+
+   @Test
+   public void sharedAcrossThreadsPlaysAsSeparateGames() throws Exception {
+      HangmanIndex index = new HangmanIndex(dictionary, 6);
+      ExecutorService executor = Executors.newFixedThreadPool(8);
+      try {
+         List<Future<?>> games = new ArrayList<>();
+         for (int game = 0; game < 64; game++) {
+            long seed = 200 + game;
+            games.add(executor.submit(() -> {
+               HangmanManagerTest.OriginalHangman original =
+                  new HangmanManagerTest.OriginalHangman(dictionary, 6, 8);
+               HangmanManager shared = new HangmanManager(index, 8);
+               HangmanManagerTest.assertPlaysAlike(original, shared, new Random(seed));
+            }));
+         }
+         for (Future<?> game : games) {
+            game.get();
+         }
+      } finally {
+         executor.shutdown();
+      }
+   }
+
+   // post: returns the words of the given index by number
+   private static List<String> wordsOf(HangmanIndex index) {
+      List<String> words = new ArrayList<>();
+      for (int id = 0; id < index.size(); id++) {
+         words.add(index.word(id));
+      }
+      return words;
+   }
+}
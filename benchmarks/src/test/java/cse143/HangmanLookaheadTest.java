@@ -0,0 +1,115 @@
+// Tests for HangmanLookahead: the family it keeps, how deep it looks within its
+// time budget (including budgets so large that the deadline overflows), and that
+// the game it plays stays consistent with its pattern.
+
+package cse143;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import org.junit.jupiter.api.*;
+
+public class HangmanLookaheadTest {
+   private static ForkJoinPool pool;
+
+   @BeforeAll
+   public static void setUp() {
+      pool = new ForkJoinPool(2);
+   }
+
+   @AfterAll
+   public static void tearDown() {
+      pool.shutdown();
+   }
+
+   @Test
+   public void keepsASmallerFamilyThatCostsAGuess() {
+      // guessing a leaves "a-" (3 words) or "--" (1 word, and a wrong guess)
+      HangmanIndex index = new HangmanIndex(List.of("ab", "ac", "ad", "bc"), 2);
+      HangmanManager game = new HangmanManager(index, 5);
+      HangmanLookahead lookahead = new HangmanLookahead(1, Long.MAX_VALUE, pool);
+      game.setLookahead(lookahead);
+      assertEquals(0, game.record('a'));
+      assertEquals("- -", game.pattern());
+      assertEquals(Set.of("bc"), game.words());
+      assertEquals(4, game.guessesLeft());
+      assertEquals(1, lookahead.lastDepth());
+   }
+
+   @Test
+   public void anUnboundedBudgetFinishesEveryDepth() {
+      HangmanIndex index = new HangmanIndex(words(400, 5, 10, 21), 5);
+      HangmanLookahead lookahead = new HangmanLookahead(3, Long.MAX_VALUE, pool);
+      HangmanManager game = new HangmanManager(index, 10);
+      game.setLookahead(lookahead);
+      game.record('a');
+      assertEquals(3, lookahead.lastDepth());
+   }
+
+   @Test
+   public void aSpentBudgetStopsAfterOneGuessAhead() {
+      // scoring the families one guess ahead needs no search, so it always finishes
+      HangmanIndex index = new HangmanIndex(words(400, 5, 10, 22), 5);
+      HangmanLookahead spent = new HangmanLookahead(3, 0, pool);
+      HangmanManager game = new HangmanManager(index, 10);
+      game.setLookahead(spent);
+      HangmanManager shallow = new HangmanManager(index, 10);
+      shallow.setLookahead(new HangmanLookahead(1, Long.MAX_VALUE, pool));
+      for (char guess : "abcde".toCharArray()) {
+         assertEquals(shallow.record(guess), game.record(guess));
+         assertEquals(1, spent.lastDepth());
+      }
+      assertEquals(shallow.pattern(), game.pattern());
+      assertEquals(shallow.words(), game.words());
+   }
+
+   @Test
+   public void wordsLeftMatchThePattern() {
+      HangmanIndex index = new HangmanIndex(words(300, 6, 12, 23), 6);
+      HangmanLookahead lookahead = new HangmanLookahead(2, Long.MAX_VALUE, pool);
+      for (int g = 0; g < 3; g++) {
+         HangmanManager game = new HangmanManager(index, 12);
+         game.setLookahead(lookahead);
+         for (char guess : "eaibcdhfgjkl".toCharArray()) {
+            if (game.guessesLeft() == 0 || game.words().size() <= 1) {
+               break;
+            }
+            game.record(guess);
+            String pattern = game.pattern().replace(" ", "");
+            assertFalse(game.words().isEmpty());
+            for (String word : game.words()) {
+               for (int i = 0; i < word.length(); i++) {
+                  char shown = pattern.charAt(i);
+                  if (shown == '-') {
+                     assertFalse(game.guesses().contains(word.charAt(i)), word);
+                  } else {
+                     assertEquals(shown, word.charAt(i), word);
+                  }
+               }
+            }
+         }
+      }
+   }
+
+   @Test
+   public void rejectsBadSettings() {
+      assertThrows(IllegalArgumentException.class, () -> new HangmanLookahead(0, 1000, pool));
+      assertThrows(IllegalArgumentException.class, () -> new HangmanLookahead(1, -1, pool));
+   }
+
+   // post: returns the given number of random words of the given length over the
+   //       given number of letters, from the given seed
+   private static List<String> words(int count, int length, int letters, long seed) {
+      Random random = new Random(seed);
+      List<String> words = new ArrayList<String>();
+      for (int i = 0; i < count; i++) {
+         char[] word = new char[length];
+         for (int j = 0; j < length; j++) {
+            word[j] = (char) ('a' + random.nextInt(letters));
+         }
+         words.add(new String(word));
+      }
+      return words;
+   }
+}
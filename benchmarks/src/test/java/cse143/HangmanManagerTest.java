@@ -0,0 +1,149 @@
+// Tests for HangmanManager: games that split the words into families by bitmasks
+// over a HangmanIndex must play exactly as the original game, which kept its
+// words in a TreeSet and its families in a TreeMap of patterns, guess for guess,
+// including the family chosen among families of the same size.
+
+package cse143;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.util.*;
+import org.junit.jupiter.api.*;
+
+public class HangmanManagerTest {
+   private static List<String> dictionary;
+
+   @BeforeAll
+   public static void setUp() throws IOException {
+      dictionary = Workloads.words(20_000);
+   }
+
+   @Test
+   public void playsAsTheOriginalGame() {
+      Random random = new Random(141);
+      for (int game = 0; game < 300; game++) {
+         int length = 2 + random.nextInt(10);
+         int max = 3 + random.nextInt(10);
+         HangmanManager manager = new HangmanManager(dictionary, length, max);
+         OriginalHangman original = new OriginalHangman(dictionary, length, max);
+         assertPlaysAlike(original, manager, random);
+      }
+   }
+
+   @Test
+   public void playsSmallDictionariesWithTies() {
+      // every guess of a vowel splits these words into families of the same size
+      List<String> words = List.of("bat", "bet", "bit", "bot", "but", "tab", "tub", "TAT");
+      Random random = new Random(142);
+      for (int game = 0; game < 200; game++) {
+         HangmanManager manager = new HangmanManager(words, 3, 8);
+         OriginalHangman original = new OriginalHangman(words, 3, 8);
+         assertPlaysAlike(original, manager, random);
+      }
+   }
+
+   @Test
+   public void refusesWhatTheOriginalRefuses() {
+      HangmanManager manager = new HangmanManager(dictionary, 5, 1);
+      manager.record('e');
+      if (manager.guessesLeft() > 0) {
+         assertThrows(IllegalArgumentException.class, () -> manager.record('E'));
+      }
+      assertThrows(IllegalArgumentException.class, () -> new HangmanManager(dictionary, 0, 5));
+      assertThrows(IllegalArgumentException.class, () -> new HangmanManager(dictionary, 5, -1));
+      HangmanManager none = new HangmanManager(dictionary, 40, 5);
+      assertEquals(0, none.wordCount());
+      assertThrows(IllegalStateException.class, () -> none.pattern());
+      assertThrows(IllegalStateException.class, () -> none.record('a'));
+      HangmanManager over = new HangmanManager(dictionary, 5, 0);
+      assertThrows(IllegalStateException.class, () -> over.record('a'));
+   }
+
+   // post: plays random guesses in both games until the guesses run out and checks
+   //       that they answer every guess and every question alike
+   static void assertPlaysAlike(OriginalHangman original, HangmanManager manager,
+                                Random random) {
+      assertEquals(original.words, manager.words());
+      assertEquals(original.words.size(), manager.wordCount());
+      if (original.words.isEmpty()) {
+         return;
+      }
+      List<Character> letters = new ArrayList<>();
+      for (char c = 'a'; c <= 'z'; c++) {
+         letters.add(c);
+      }
+      letters.add('!');
+      Collections.shuffle(letters, random);
+      for (char guess : letters) {
+         if (original.guessesLeft == 0) {
+            break;
+         }
+         assertEquals(original.pattern, manager.pattern());
+         char asked = random.nextBoolean() ? Character.toUpperCase(guess) : guess;
+         assertEquals(original.record(asked), manager.record(asked), "guess " + asked);
+         assertEquals(original.guessesLeft, manager.guessesLeft());
+         assertEquals(original.guesses, manager.guesses());
+         assertEquals(original.words.size(), manager.wordCount());
+         assertEquals(original.words, manager.words());
+      }
+      assertEquals(original.pattern, manager.pattern());
+   }
+
+   // This class plays hangman as the original HangmanManager did: the words are a
+   // TreeSet, and a guess groups them by their patterns in a TreeMap and keeps the
+   // first of the largest families in the order of their patterns.
+   static class OriginalHangman {
+      public Set<String> words;
+      public Set<Character> guesses;
+      public String pattern;
+      public int guessesLeft;
+
+      // post: starts a game with the words of the given length and max wrong guesses
+      public OriginalHangman(Collection<String> dictionary, int length, int max) {
+         words = new TreeSet<>();
+         for (String word : dictionary) {
+            if (word.length() == length) {
+               words.add(word.toLowerCase());
+            }
+         }
+         pattern = "-" + " -".repeat(length - 1);
+         guesses = new TreeSet<>();
+         guessesLeft = max;
+      }
+
+      // post: records the given guess and returns its occurrences in the new pattern
+      public int record(char guess) {
+         guess = Character.toLowerCase(guess);
+         guesses.add(guess);
+         Map<String, Set<String>> families = new TreeMap<>();
+         for (String word : words) {
+            StringBuilder key = new StringBuilder();
+            for (int i = 0; i < word.length(); i++) {
+               key.append(i == 0 ? "" : " ").append(word.charAt(i) == guess ? guess : '-');
+            }
+            families.computeIfAbsent(key.toString(), k -> new TreeSet<>()).add(word);
+         }
+         String chosen = null;
+         for (String key : families.keySet()) {
+            if (chosen == null || families.get(key).size() > families.get(chosen).size()) {
+               chosen = key;
+            }
+         }
+         words = families.get(chosen);
+         StringBuilder next = new StringBuilder(pattern);
+         int occurrences = 0;
+         for (int i = 0; i < next.length(); i++) {
+            if (chosen.charAt(i) == guess) {
+               next.setCharAt(i, guess);
+               occurrences++;
+            }
+         }
+         pattern = next.toString();
+         if (occurrences == 0) {
+            guessesLeft--;
+         }
+         return occurrences;
+      }
+   }
+}
@@ -0,0 +1,92 @@
+// Tests for HangmanServer: games played through its methods and through a socket,
+// the games of a closed connection ending, and the measured heap of a game.
+
+package cse143;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import org.junit.jupiter.api.*;
+
+public class HangmanServerTest {
+   private static final List<String> DICTIONARY = List.of(
+      "ally", "beta", "cool", "deal", "else", "flew", "good", "hope", "ibex", "jazz");
+
+   private HangmanServer server;
+
+   @BeforeEach
+   public void setUp() {
+      server = new HangmanServer(DICTIONARY);
+   }
+
+   @AfterEach
+   public void tearDown() {
+      server.shutdown();
+   }
+
+   @Test
+   public void countsWordsAsTheGameDoes() {
+      long number = server.newGame(4, 5);
+      assertEquals(10, server.wordCount(number));
+      server.record(number, 'e');
+      HangmanManager game = new HangmanManager(DICTIONARY, 4, 5);
+      game.record('e');
+      assertEquals(game.words().size(), server.wordCount(number));
+      assertEquals(game.pattern(), server.pattern(number));
+      assertEquals(game.guessesLeft(), server.guessesLeft(number));
+   }
+
+   @Test
+   public void refusesGamesNotBeingPlayed() {
+      long number = server.newGame(4, 5);
+      server.endGame(number);
+      assertThrows(IllegalArgumentException.class, () -> server.wordCount(number));
+      assertEquals(0, server.sessions());
+   }
+
+   @Test
+   public void endsTheGamesOfAClosedConnection() throws Exception {
+      try (ServerSocket socket = new ServerSocket(0)) {
+         Thread serving = new Thread(() -> {
+            try {
+               server.serve(socket);
+            } catch (IOException e) {
+               throw new UncheckedIOException(e);
+            }
+         });
+         serving.start();
+         try (Socket client = new Socket(InetAddress.getLoopbackAddress(), socket.getLocalPort());
+              BufferedReader input = new BufferedReader(new InputStreamReader(client.getInputStream()));
+              PrintWriter output = new PrintWriter(client.getOutputStream(), true)) {
+            output.println("NEW 4 5");
+            assertEquals("OK 0 ----", input.readLine());
+            output.println("NEW 4 5");
+            assertEquals("OK 1 ----", input.readLine());
+            output.println("END 1");
+            assertEquals("OK", input.readLine());
+            output.println("WORDS 0");
+            assertEquals("OK 10", input.readLine());
+            output.println("HELLO");
+            assertTrue(input.readLine().startsWith("ERROR"));
+            assertEquals(1, server.sessions());
+         }
+         long deadline = System.nanoTime() + 10_000_000_000L;
+         while (server.sessions() > 0 && System.nanoTime() - deadline < 0) {
+            Thread.sleep(10);
+         }
+         assertEquals(0, server.sessions());
+      }
+   }
+
+   @Test
+   public void measuresTheHeapOfAGame() {
+      long bytes = server.sessionBytes(4);
+      // a game holds at least its bitset, and far less than a megabyte
+      assertTrue(bytes >= 8, "bytes: " + bytes);
+      assertTrue(bytes < 1 << 20, "bytes: " + bytes);
+      assertEquals(HangmanServer.GIGABYTE / bytes, server.sessionsPerGigabyte(4));
+      assertEquals(0, server.sessions());
+   }
+}
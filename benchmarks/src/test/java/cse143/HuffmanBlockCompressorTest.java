@@ -0,0 +1,118 @@
+// Tests for HuffmanBlockCompressor: whatever the block size and tree sharing, the
+// container must decompress to exactly the bytes that were compressed.
+
+package cse143;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import org.junit.jupiter.api.*;
+
+public class HuffmanBlockCompressorTest {
+   private static ForkJoinPool pool;
+
+   @BeforeAll
+   public static void setUp() {
+      pool = new ForkJoinPool(2);
+   }
+
+   @AfterAll
+   public static void tearDown() {
+      pool.shutdown();
+   }
+
+   @Test
+   public void roundTripsBlocksWithTheirOwnTrees() throws IOException {
+      byte[] data = skewedBytes(100_000, 1);
+      assertArrayEquals(data, roundTrip(new HuffmanBlockCompressor(4096, false, pool), data));
+   }
+
+   @Test
+   public void roundTripsBlocksSharingATree() throws IOException {
+      byte[] data = skewedBytes(100_000, 2);
+      assertArrayEquals(data, roundTrip(new HuffmanBlockCompressor(4096, true, pool), data));
+   }
+
+   @Test
+   public void roundTripsAPartialLastBlock() throws IOException {
+      byte[] data = skewedBytes(10_001, 3);
+      assertArrayEquals(data, roundTrip(new HuffmanBlockCompressor(1000, false, pool), data));
+   }
+
+   @Test
+   public void roundTripsOneRepeatedByte() throws IOException {
+      byte[] data = new byte[5000];
+      Arrays.fill(data, (byte) 'a');
+      assertArrayEquals(data, roundTrip(new HuffmanBlockCompressor(1024, false, pool), data));
+   }
+
+   @Test
+   public void roundTripsEmptyInput() throws IOException {
+      byte[] data = new byte[0];
+      assertArrayEquals(data, roundTrip(new HuffmanBlockCompressor(1024, false, pool), data));
+   }
+
+   @Test
+   public void roundTripsInterleavedBlocks() throws IOException {
+      byte[] data = skewedBytes(100_000, 4);
+      assertArrayEquals(data, roundTrip(new HuffmanBlockCompressor(4096, false, true, pool),
+                                        data));
+   }
+
+   @Test
+   public void roundTripsInterleavedBlocksSharingATree() throws IOException {
+      byte[] data = skewedBytes(100_000, 5);
+      assertArrayEquals(data, roundTrip(new HuffmanBlockCompressor(4096, true, true, pool),
+                                        data));
+   }
+
+   @Test
+   public void roundTripsInterleavedBlocksTooShortToSplitEvenly() throws IOException {
+      // blocks of 7 bytes, and a last block of 3, leave some sub-streams empty
+      // or shorter than the others
+      byte[] data = skewedBytes(10, 6);
+      assertArrayEquals(data, roundTrip(new HuffmanBlockCompressor(7, false, true, pool),
+                                        data));
+   }
+
+   @Test
+   public void interleavedAndSingleStreamBlocksDecodeAlike() throws IOException {
+      byte[] data = skewedBytes(50_000, 7);
+      ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+      new HuffmanBlockCompressor(4096, false, true, pool)
+         .compress(new ByteArrayInputStream(data), compressed);
+      // the container says how each block was written, so any compressor reads it
+      ByteArrayOutputStream decompressed = new ByteArrayOutputStream();
+      new HuffmanBlockCompressor(4096, false, false, pool)
+         .decompress(new ByteArrayInputStream(compressed.toByteArray()), decompressed);
+      assertArrayEquals(data, decompressed.toByteArray());
+   }
+
+   @Test
+   public void rejectsABadBlockSize() {
+      assertThrows(IllegalArgumentException.class,
+                   () -> new HuffmanBlockCompressor(0, false, pool));
+   }
+
+   // post: returns the given data compressed and decompressed by the given compressor
+   static byte[] roundTrip(HuffmanBlockCompressor compressor, byte[] data) throws IOException {
+      ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+      compressor.compress(new ByteArrayInputStream(data), compressed);
+      ByteArrayOutputStream decompressed = new ByteArrayOutputStream();
+      compressor.decompress(new ByteArrayInputStream(compressed.toByteArray()), decompressed);
+      return decompressed.toByteArray();
+   }
+
+   // post: returns the given number of random bytes from the given seed, with low
+   //       values much more frequent than high ones, so that codes differ in length
+   static byte[] skewedBytes(int size, long seed) {
+      Random random = new Random(seed);
+      byte[] data = new byte[size];
+      for (int i = 0; i < size; i++) {
+         data[i] = (byte) (256 * Math.pow(random.nextDouble(), 4));
+      }
+      return data;
+   }
+}
@@ -0,0 +1,155 @@
+// Tests for HuffmanDecoder: decoding with lookup tables must give exactly what
+// walking the tree gives, for shallow and deep trees (codes longer than a table
+// and longer than 32 bits), for every table size, and from both bit streams.
+
+package cse143;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.file.*;
+import java.util.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.*;
+
+public class HuffmanDecoderTest {
+   @TempDir
+   Path directory;
+
+   @Test
+   public void tablesDecodeWhatTheTreeDoes() throws IOException {
+      byte[] data = HuffmanBlockCompressorTest.skewedBytes(50_000, 71);
+      assertDecodes(data, HuffmanTree2.count(ByteBuffer.wrap(data), 8));
+   }
+
+   @Test
+   public void tablesDecodeCodesLongerThanAnInt() throws IOException {
+      // Fibonacci counts from 1, 2 give a code one bit longer for each character
+      int[] count = new int[256];
+      count[0] = 1;
+      count[1] = 2;
+      for (int i = 2; i < 40; i++) {
+         count[i] = count[i - 1] + count[i - 2];
+      }
+      byte[] data = new byte[2000];
+      Random random = new Random(72);
+      for (int i = 0; i < data.length; i++) {
+         // the rarest characters, with the longest codes, are as common as any
+         data[i] = (byte) random.nextInt(40);
+      }
+      assertDecodes(data, count);
+   }
+
+   @Test
+   public void tablesDecodeASingleCharacter() throws IOException {
+      byte[] data = new byte[1000];
+      Arrays.fill(data, (byte) 'a');
+      assertDecodes(data, HuffmanTree2.count(ByteBuffer.wrap(data), 8));
+      assertDecodes(new byte[0], new int[256]);
+   }
+
+   @Test
+   public void refusesBadTableSizes() {
+      HuffmanNode root = new HuffmanNode(-1, 2, new HuffmanNode(0, 1), new HuffmanNode(1, 1));
+      assertThrows(IllegalArgumentException.class, () -> new HuffmanDecoder(root, 0));
+      assertThrows(IllegalArgumentException.class, () -> new HuffmanDecoder(root, 17));
+      assertEquals(HuffmanDecoder.DEFAULT_TABLE_BITS, new HuffmanDecoder(root).tableBits());
+   }
+
+   // post: checks that the given data, encoded with the Huffman tree of the given
+   //       counts, decodes back by the tree and by tables of every size
+   private void assertDecodes(byte[] data, int[] count) throws IOException {
+      HuffmanTree tree = new HuffmanTree(count);
+      Map<Integer, String> codes = codes(tree);
+      int eof = count.length;
+      Path file = encode(data, codes, eof);
+
+      BitInputStream input = new BitInputStream(file.toString());
+      ByteArrayOutputStream walked = new ByteArrayOutputStream();
+      tree.decode(input, new PrintStream(walked), eof);
+      input.close();
+      assertArrayEquals(data, walked.toByteArray());
+
+      input = new BitInputStream(file.toString());
+      ByteArrayOutputStream looked = new ByteArrayOutputStream();
+      tree.decodeTable(input, new PrintStream(looked), eof);
+      input.close();
+      assertArrayEquals(data, looked.toByteArray());
+
+      HuffmanNode root = root(codes);
+      byte[] bytes = Files.readAllBytes(file);
+      for (int tableBits = 1; tableBits <= 16; tableBits++) {
+         HuffmanDecoder decoder = new HuffmanDecoder(root, tableBits);
+         input = new BitInputStream(file.toString());
+         ByteArrayOutputStream output = new ByteArrayOutputStream();
+         decoder.decode(input, new PrintStream(output), eof);
+         input.close();
+         assertArrayEquals(data, output.toByteArray(), "table bits: " + tableBits);
+         output = new ByteArrayOutputStream();
+         decoder.decode(new FastBitInputStream(ByteBuffer.wrap(bytes)), output, eof);
+         assertArrayEquals(data, output.toByteArray(), "table bits: " + tableBits);
+      }
+   }
+
+   // post: returns the code of every character of the given tree, as it writes them
+   private static Map<Integer, String> codes(HuffmanTree tree) {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      tree.write(new PrintStream(bytes, true));
+      Scanner lines = new Scanner(bytes.toString());
+      Map<Integer, String> codes = new HashMap<>();
+      while (lines.hasNextLine()) {
+         int character = Integer.parseInt(lines.nextLine());
+         codes.put(character, lines.nextLine());
+      }
+      return codes;
+   }
+
+   // post: returns a tree with the given codes
+   private static HuffmanNode root(Map<Integer, String> codes) {
+      if (codes.size() == 1) {
+         // a lone character has the empty code
+         return new HuffmanNode(codes.keySet().iterator().next(), 0);
+      }
+      HuffmanNode root = new HuffmanNode(-1, 0);
+      for (int character : codes.keySet()) {
+         HuffmanNode node = root;
+         String code = codes.get(character);
+         for (int i = 0; i < code.length() - 1; i++) {
+            if (code.charAt(i) == '0') {
+               node.left = node.left == null ? new HuffmanNode(-1, 0) : node.left;
+               node = node.left;
+            } else {
+               node.right = node.right == null ? new HuffmanNode(-1, 0) : node.right;
+               node = node.right;
+            }
+         }
+         if (code.charAt(code.length() - 1) == '0') {
+            node.left = new HuffmanNode(character, 0);
+         } else {
+            node.right = new HuffmanNode(character, 0);
+         }
+      }
+      return root;
+   }
+
+   // post: writes the codes of the given data, followed by the code of eof, to a file
+   //       through the course BitOutputStream and returns the file
+   private Path encode(byte[] data, Map<Integer, String> codes, int eof) {
+      Path file = directory.resolve("encoded");
+      BitOutputStream output = new BitOutputStream(file.toString());
+      for (byte b : data) {
+         write(output, codes.get(b & 0xff));
+      }
+      write(output, codes.get(eof));
+      output.close();
+      return file;
+   }
+
+   // post: writes the given code to the given output, first bit first
+   private static void write(BitOutputStream output, String code) {
+      for (int i = 0; i < code.length(); i++) {
+         output.writeBit(code.charAt(i) - '0');
+      }
+   }
+}
@@ -0,0 +1,100 @@
+// Tests for the encoders of HuffmanTree2: every overload must write the same bits
+// for the same input, and codes too long for an int must be refused without
+// changing the arrays they were to be recorded in.
+
+package cse143;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.file.*;
+import java.util.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.*;
+
+public class HuffmanEncodeTest {
+   @TempDir
+   Path directory;
+
+   @Test
+   public void everyEncoderWritesTheSameBits() throws IOException {
+      byte[] data = HuffmanBlockCompressorTest.skewedBytes(100_000, 61);
+      HuffmanTree2 tree = new HuffmanTree2(HuffmanTree2.count(ByteBuffer.wrap(data), 8));
+
+      ByteArrayOutputStream stream = new ByteArrayOutputStream();
+      FastBitOutputStream output = new FastBitOutputStream(stream);
+      tree.encode(new ByteArrayInputStream(data), output, 256);
+      output.close();
+      byte[] expected = stream.toByteArray();
+
+      stream = new ByteArrayOutputStream();
+      output = new FastBitOutputStream(stream);
+      tree.encode(ByteBuffer.wrap(data), output, 256);
+      output.close();
+      assertArrayEquals(expected, stream.toByteArray());
+
+      stream = new ByteArrayOutputStream();
+      output = new FastBitOutputStream(stream);
+      tree.encode(ByteBuffer.wrap(data), output, 256, new HuffmanSeekIndex(4096));
+      output.close();
+      assertArrayEquals(expected, stream.toByteArray());
+
+      stream = new ByteArrayOutputStream();
+      output = new FastBitOutputStream(stream);
+      tree.encode(new ByteArrayInputStream(data), output, 256, new HuffmanSeekIndex(4096));
+      output.close();
+      assertArrayEquals(expected, stream.toByteArray());
+
+      Path file = directory.resolve("course");
+      BitOutputStream course = new BitOutputStream(file.toString());
+      tree.encode(new ByteArrayInputStream(data), course, 256);
+      course.close();
+      assertArrayEquals(expected, Files.readAllBytes(file));
+   }
+
+   @Test
+   public void assignsTheCodesAsBits() {
+      byte[] data = HuffmanBlockCompressorTest.skewedBytes(10_000, 62);
+      HuffmanTree2 tree = new HuffmanTree2(HuffmanTree2.count(ByteBuffer.wrap(data), 8));
+      String[] codes = new String[257];
+      tree.assign(codes);
+      int[] codeBits = new int[257];
+      byte[] codeLengths = new byte[257];
+      tree.assign(codeBits, codeLengths);
+      for (int i = 0; i < codes.length; i++) {
+         if (codes[i] != null) {
+            assertEquals(codes[i].length(), codeLengths[i]);
+            String reversed = new StringBuilder(codes[i]).reverse().toString();
+            assertEquals(Integer.parseUnsignedInt(reversed, 2), codeBits[i], "character " + i);
+         }
+      }
+   }
+
+   @Test
+   public void refusesLongCodesWithoutChangingTheArrays() {
+      // Fibonacci counts from 1, 2 give a code one bit longer for each character, as
+      // the pseudo-eof (counted once) joins the first one
+      int[] count = new int[40];
+      count[0] = 1;
+      count[1] = 2;
+      for (int i = 2; i < count.length; i++) {
+         count[i] = count[i - 1] + count[i - 2];
+      }
+      HuffmanTree2 tree = new HuffmanTree2(count);
+      int[] codeBits = new int[41];
+      byte[] codeLengths = new byte[41];
+      Arrays.fill(codeBits, -1);
+      Arrays.fill(codeLengths, (byte) -1);
+      assertThrows(IllegalStateException.class, () -> tree.assign(codeBits, codeLengths));
+      for (int i = 0; i < codeBits.length; i++) {
+         assertEquals(-1, codeBits[i]);
+         assertEquals(-1, codeLengths[i]);
+      }
+      // the same counts fit when the tree is built with a maximum code length
+      new HuffmanTree2(count, 32).assign(codeBits, codeLengths);
+      for (byte length : codeLengths) {
+         assertTrue(length >= 1 && length <= 32, "length: " + length);
+      }
+   }
+}
@@ -0,0 +1,132 @@
+// Tests for the headers of HuffmanTree2: standard and canonical headers (with the
+// code lengths of every character or only of the used ones, in gamma-coded gaps)
+// must read back as the same code, around the alphabet size where canonical headers
+// become the only format, and a header cut short must be refused.
+
+package cse143;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.nio.*;
+import java.util.*;
+import org.junit.jupiter.api.*;
+
+public class HuffmanHeaderTest {
+   @Test
+   public void standardHeaderReadsBack() throws IOException {
+      HuffmanTree2 tree = new HuffmanTree2(counts(256, 256, 51));
+      assertNull(tree.canonicalCode());
+      assertSameCodes(tree, readBack(tree), 257);
+   }
+
+   @Test
+   public void denseCanonicalHeaderReadsBack() throws IOException {
+      HuffmanTree2 tree = new HuffmanTree2(counts(256, 256, 52), true);
+      HuffmanTree2 read = readBack(tree);
+      assertNotNull(read.canonicalCode());
+      assertSameCodes(tree, read, 257);
+   }
+
+   @Test
+   public void sparseCanonicalHeaderReadsBack() throws IOException {
+      // a few used characters are cheaper to list with gamma-coded gaps
+      int[] count = new int[256];
+      count['a'] = 10;
+      count['e'] = 7;
+      count['z'] = 1;
+      count[255] = 3;
+      HuffmanTree2 tree = new HuffmanTree2(count, true);
+      HuffmanTree2 read = readBack(tree);
+      assertNotNull(read.canonicalCode());
+      assertSameCodes(tree, read, 257);
+      assertTrue(headerBits(tree) < 257, "header bits: " + headerBits(tree));
+   }
+
+   @Test
+   public void canonicalHeaderKeepsAnotherPseudoEof() throws IOException {
+      HuffmanTree2 tree = new HuffmanTree2(counts(100, 60, 53), true);
+      assertSameCodes(tree, readBack(tree), 101);
+   }
+
+   @Test
+   public void headersAtTheLargestStandardAlphabet() throws IOException {
+      // a pseudo-eof of 510 still fits the standard format
+      HuffmanTree2 standard = new HuffmanTree2(counts(510, 510, 54));
+      assertNull(standard.canonicalCode());
+      HuffmanTree2 read = readBack(standard);
+      assertNull(read.canonicalCode());
+      assertSameCodes(standard, read, 511);
+      HuffmanTree2 canonical = new HuffmanTree2(counts(510, 510, 54), true);
+      assertSameCodes(canonical, readBack(canonical), 511);
+   }
+
+   @Test
+   public void headersPastTheLargestStandardAlphabet() throws IOException {
+      // a pseudo-eof of 511 would be the canonical marker, so the tree is canonical
+      // even though a standard tree was asked for
+      HuffmanTree2 tree = new HuffmanTree2(counts(511, 511, 55));
+      assertNotNull(tree.canonicalCode());
+      HuffmanTree2 read = readBack(tree);
+      assertNotNull(read.canonicalCode());
+      assertSameCodes(tree, read, 512);
+   }
+
+   @Test
+   public void refusesATruncatedHeader() throws IOException {
+      for (HuffmanTree2 tree : List.of(new HuffmanTree2(counts(256, 40, 56)),
+                                       new HuffmanTree2(counts(256, 40, 56), true),
+                                       new HuffmanTree2(counts(256, 256, 57), true))) {
+         byte[] header = header(tree);
+         for (int length = 0; length < header.length - 1; length++) {
+            byte[] cut = Arrays.copyOf(header, length);
+            assertThrows(IllegalArgumentException.class,
+                         () -> new HuffmanTree2(new FastBitInputStream(ByteBuffer.wrap(cut))),
+                         "bytes: " + length);
+         }
+      }
+   }
+
+   // post: returns random counts of the given number of characters, of which the
+   //       given number are used, from the given seed
+   private static int[] counts(int characters, int used, long seed) {
+      Random random = new Random(seed);
+      int[] count = new int[characters];
+      for (int i = 0; i < used; i++) {
+         count[random.nextInt(characters)] += 1 + random.nextInt(1000);
+      }
+      return count;
+   }
+
+   // post: returns the header of the given tree, padded to a whole byte
+   private static byte[] header(HuffmanTree2 tree) throws IOException {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      FastBitOutputStream output = new FastBitOutputStream(bytes);
+      tree.writeHeader(output);
+      output.close();
+      return bytes.toByteArray();
+   }
+
+   // post: returns the number of bits of the header of the given tree
+   private static long headerBits(HuffmanTree2 tree) {
+      FastBitOutputStream output = new FastBitOutputStream(OutputStream.nullOutputStream());
+      tree.writeHeader(output);
+      return output.bitsWritten();
+   }
+
+   // post: returns the tree read from the header of the given tree
+   private static HuffmanTree2 readBack(HuffmanTree2 tree) throws IOException {
+      return new HuffmanTree2(new FastBitInputStream(ByteBuffer.wrap(header(tree))));
+   }
+
+   // post: checks that both trees give every one of the given number of characters
+   //       the same code
+   private static void assertSameCodes(HuffmanTree2 expected, HuffmanTree2 actual,
+                                       int characters) {
+      String[] expectedCodes = new String[characters];
+      expected.assign(expectedCodes);
+      String[] actualCodes = new String[characters];
+      actual.assign(actualCodes);
+      assertArrayEquals(expectedCodes, actualCodes);
+   }
+}
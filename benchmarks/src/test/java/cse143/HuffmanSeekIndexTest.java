@@ -0,0 +1,131 @@
+// Tests for HuffmanSeekIndex and HuffmanTree2.decodeRange: an index filled while
+// encoding must survive being written and read back, and any range decoded from
+// its checkpoints must match the same bytes of the original.
+
+package cse143;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.nio.*;
+import java.util.*;
+import org.junit.jupiter.api.*;
+
+public class HuffmanSeekIndexTest {
+   private static final int EOF = 256;
+   private static final int INTERVAL = 1000;
+
+   private byte[] data;          // the original bytes
+   private HuffmanTree2 tree;    // tree of the original bytes
+
+   @BeforeEach
+   public void setUp() {
+      data = HuffmanBlockCompressorTest.skewedBytes(25_500, 11);
+      tree = new HuffmanTree2(HuffmanTree2.count(ByteBuffer.wrap(data), 8));
+   }
+
+   @Test
+   public void buffersAndStreamsGetTheSameIndex() throws IOException {
+      HuffmanSeekIndex fromBuffer = new HuffmanSeekIndex(INTERVAL);
+      byte[] bufferBits = encode(fromBuffer);
+      HuffmanSeekIndex fromStream = new HuffmanSeekIndex(INTERVAL);
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      FastBitOutputStream output = new FastBitOutputStream(bytes);
+      tree.encode(new ByteArrayInputStream(data), output, EOF, fromStream);
+      output.close();
+      assertArrayEquals(bufferBits, bytes.toByteArray());
+      assertEquals(26, fromBuffer.size());
+      assertEquals(fromBuffer.size(), fromStream.size());
+      for (int i = 0; i < fromBuffer.size(); i++) {
+         assertEquals((long) i * INTERVAL, fromBuffer.byteOffset(i));
+         assertEquals(fromBuffer.byteOffset(i), fromStream.byteOffset(i));
+         assertEquals(fromBuffer.bitOffset(i), fromStream.bitOffset(i));
+      }
+   }
+
+   @Test
+   public void aNullIndexEncodesPlainly() throws IOException {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      FastBitOutputStream output = new FastBitOutputStream(bytes);
+      tree.encode(ByteBuffer.wrap(data), output, EOF, (HuffmanSeekIndex) null);
+      output.close();
+      assertArrayEquals(encode(new HuffmanSeekIndex(INTERVAL)), bytes.toByteArray());
+   }
+
+   @Test
+   public void writtenIndexReadsBack() throws IOException {
+      HuffmanSeekIndex index = new HuffmanSeekIndex(INTERVAL);
+      encode(index);
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      index.write(bytes);
+      HuffmanSeekIndex read = HuffmanSeekIndex.read(new ByteArrayInputStream(bytes.toByteArray()));
+      assertEquals(index.interval(), read.interval());
+      assertEquals(index.size(), read.size());
+      for (int i = 0; i < index.size(); i++) {
+         assertEquals(index.byteOffset(i), read.byteOffset(i));
+         assertEquals(index.bitOffset(i), read.bitOffset(i));
+      }
+   }
+
+   @Test
+   public void decodesRangesFromTheirCheckpoints() throws IOException {
+      HuffmanSeekIndex index = new HuffmanSeekIndex(INTERVAL);
+      byte[] compressed = encode(index);
+      Random random = new Random(12);
+      long[][] ranges = {{0, 10}, {999, 2}, {1000, 1000}, {12_345, 5000}, {25_499, 1}};
+      for (long[] range : ranges) {
+         assertRange(compressed, index, range[0], (int) range[1]);
+      }
+      for (int i = 0; i < 100; i++) {
+         assertRange(compressed, index, random.nextInt(data.length), random.nextInt(3000));
+      }
+   }
+
+   @Test
+   public void rangesPastTheEndStopAtTheEnd() throws IOException {
+      HuffmanSeekIndex index = new HuffmanSeekIndex(INTERVAL);
+      byte[] compressed = encode(index);
+      assertRange(compressed, index, 25_000, 10_000);
+      assertRange(compressed, index, data.length, 10);
+      assertRange(compressed, index, data.length + 5000L, 10);
+   }
+
+   @Test
+   public void rejectsCheckpointsOutOfOrder() {
+      HuffmanSeekIndex index = new HuffmanSeekIndex(INTERVAL);
+      index.add(0, 0);
+      index.add(1000, 800);
+      assertThrows(IllegalArgumentException.class, () -> index.add(1000, 900));
+      assertThrows(IllegalArgumentException.class, () -> index.add(2000, 700));
+   }
+
+   @Test
+   public void rejectsWhatIsNotAnIndex() {
+      byte[] bytes = new byte[12];
+      assertThrows(IOException.class,
+                   () -> HuffmanSeekIndex.read(new ByteArrayInputStream(bytes)));
+   }
+
+   // post: encodes the data from a buffer, filling the given index, and returns the
+   //       compressed bytes
+   private byte[] encode(HuffmanSeekIndex index) throws IOException {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      FastBitOutputStream output = new FastBitOutputStream(bytes);
+      tree.encode(ByteBuffer.wrap(data), output, EOF, index);
+      output.close();
+      return bytes.toByteArray();
+   }
+
+   // post: checks that decodeRange gives the bytes of the data from offset to
+   //       offset + length - 1, or to its end if that comes first
+   private void assertRange(byte[] compressed, HuffmanSeekIndex index, long offset, int length)
+         throws IOException {
+      ByteArrayOutputStream range = new ByteArrayOutputStream();
+      tree.decodeRange(new FastBitInputStream(ByteBuffer.wrap(compressed)), index, EOF, offset,
+                       length, range);
+      int from = (int) Math.min(offset, data.length);
+      int to = (int) Math.min(offset + length, data.length);
+      assertArrayEquals(Arrays.copyOfRange(data, from, to), range.toByteArray(),
+                        "range " + offset + ", " + length);
+   }
+}
@@ -0,0 +1,88 @@
+// Tests for HuffmanTree2 over large alphabets: 16-bit symbols must round trip
+// through a header and the bulk encoder and decoder, trees over more than 510
+// characters (built by merging two sorted queues) must cost exactly what a
+// priority-queue Huffman tree costs, and bad symbol widths must be refused.
+
+package cse143;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.nio.*;
+import java.util.*;
+import org.junit.jupiter.api.*;
+
+public class LargeAlphabetTest {
+   @Test
+   public void wideSymbolsRoundTrip() throws IOException {
+      // UTF-16 text of a few thousand common characters among rarer ones
+      Random random = new Random(101);
+      ByteBuffer text = ByteBuffer.allocate(200_000);
+      while (text.hasRemaining()) {
+         int rank = (int) Math.min(20_000, Math.abs(random.nextGaussian()) * 2000);
+         text.putChar((char) (0x4e00 + rank));
+      }
+      byte[] data = text.array();
+      int[] count = HuffmanTree2.count(ByteBuffer.wrap(data), 16);
+      HuffmanTree2 tree = new HuffmanTree2(count);
+      assertNotNull(tree.canonicalCode());
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      FastBitOutputStream output = new FastBitOutputStream(bytes);
+      tree.writeHeader(output);
+      tree.encode(ByteBuffer.wrap(data), output, count.length, 16);
+      output.close();
+      FastBitInputStream input = new FastBitInputStream(ByteBuffer.wrap(bytes.toByteArray()));
+      ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+      new HuffmanTree2(input).decode(input, decoded, count.length, 16);
+      assertArrayEquals(data, decoded.toByteArray());
+   }
+
+   @Test
+   public void largeTreesCostWhatHuffmanCosts() {
+      Random random = new Random(102);
+      for (int characters : new int[] {511, 4096, 65536}) {
+         int[] count = new int[characters];
+         for (int i = 0; i < count.length; i++) {
+            // many ties and unused characters, which the merge must handle
+            count[i] = random.nextInt(4) == 0 ? 0 : 1 + (int) Math.exp(random.nextDouble() * 12);
+         }
+         CanonicalCode code = new HuffmanTree2(count).canonicalCode();
+         int[] lengths = new int[characters + 1];
+         for (int i = 0; i < lengths.length; i++) {
+            lengths[i] = code.length(i);
+         }
+         assertEquals(huffmanBits(count), CanonicalCode.encodedBits(count, lengths),
+                      "characters: " + characters);
+      }
+   }
+
+   @Test
+   public void refusesBadSymbolWidths() {
+      ByteBuffer odd = ByteBuffer.wrap(new byte[3]);
+      assertThrows(IllegalArgumentException.class, () -> HuffmanTree2.count(odd, 16));
+      assertThrows(IllegalArgumentException.class, () -> HuffmanTree2.count(odd, 12));
+      HuffmanTree2 tree = new HuffmanTree2(new int[256]);
+      FastBitOutputStream output = new FastBitOutputStream(new ByteArrayOutputStream());
+      assertThrows(IllegalArgumentException.class, () -> tree.encode(odd, output, 256, 16));
+   }
+
+   // post: returns the number of bits a Huffman code needs for the given counts and
+   //       the pseudo-eof once: the sum of the weights of the branches a priority
+   //       queue merges
+   private static long huffmanBits(int[] count) {
+      Queue<Long> queue = new PriorityQueue<>();
+      for (int c : count) {
+         if (c > 0) {
+            queue.add((long) c);
+         }
+      }
+      queue.add(1L);
+      long bits = 0;
+      while (queue.size() > 1) {
+         long sum = queue.remove() + queue.remove();
+         bits += sum;
+         queue.add(sum);
+      }
+      return bits;
+   }
+}
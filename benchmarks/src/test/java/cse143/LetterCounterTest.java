@@ -0,0 +1,116 @@
+// Tests for LetterCounter: text given as a CharSequence, a char array, UTF-8 bytes
+// or a mapped file must count the same letters as a character-by-character count
+// with Character.toLowerCase, including characters outside ASCII whose lowercase
+// is a to z, and malformed UTF-8 bytes must be skipped.
+
+package cse143;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.*;
+
+public class LetterCounterTest {
+   // the Kelvin sign and the dotted capital I have a to z lowercase letters; the
+   // others do not, and the last is a character outside the 16-bit range
+   private static final String UNUSUAL = "\u212a\u0130\u00e9\u00c9\u00df\u4e2d\ud83d\ude00";
+
+   @TempDir
+   Path directory;
+
+   @Test
+   public void everyInputCountsTheSameLetters() throws IOException {
+      Random random = new Random(131);
+      for (int trial = 0; trial < 50; trial++) {
+         String text = randomText(random, random.nextInt(5000));
+         long[] expected = naiveCounts(text);
+         assertCounts(expected, new LetterCounter().add(text));
+         char[] chars = ("xx" + text + "yy").toCharArray();
+         assertCounts(expected, new LetterCounter().add(chars, 2, chars.length - 2));
+         byte[] utf8 = text.getBytes(StandardCharsets.UTF_8);
+         ByteBuffer bytes = ByteBuffer.wrap(utf8);
+         assertCounts(expected, new LetterCounter().add(bytes));
+         assertEquals(0, bytes.position());
+         Path file = Files.write(directory.resolve("text"), utf8);
+         assertCounts(expected, new LetterCounter().addFile(file.toString()));
+         assertEquals(new LetterInventory(text).toString(),
+                      new LetterCounter().add(text).toInventory().toString());
+      }
+   }
+
+   @Test
+   public void countsAcrossCalls() {
+      LetterCounter counter = new LetterCounter();
+      counter.add("Hello");
+      counter.add(ByteBuffer.wrap(", World".getBytes(StandardCharsets.US_ASCII)));
+      counter.add("!?".toCharArray(), 0, 2);
+      assertEquals(10, counter.size());
+      assertEquals("[dehllloorw]", counter.toInventory().toString());
+   }
+
+   @Test
+   public void skipsMalformedBytes() throws IOException {
+      byte[] bytes = {'a', (byte) 0x80, 'b', (byte) 0xc3, 'c', (byte) 0xff, 'd',
+                      (byte) 0xe2, (byte) 0x84, 'e', (byte) 0xc3};
+      LetterCounter counter = new LetterCounter().add(ByteBuffer.wrap(bytes));
+      assertEquals("[abcde]", counter.toInventory().toString());
+      Path file = Files.write(directory.resolve("malformed"), bytes);
+      assertEquals("[abcde]", new LetterCounter().addFile(file.toString()).toInventory().toString());
+   }
+
+   @Test
+   public void refusesBadRanges() {
+      char[] text = "abc".toCharArray();
+      LetterCounter counter = new LetterCounter();
+      assertThrows(IndexOutOfBoundsException.class, () -> counter.add(text, -1, 2));
+      assertThrows(IndexOutOfBoundsException.class, () -> counter.add(text, 2, 1));
+      assertThrows(IndexOutOfBoundsException.class, () -> counter.add(text, 0, 4));
+      assertEquals(0, counter.size());
+   }
+
+   // post: returns random text of about the given length: ASCII letters and other
+   //       characters, with now and then one of the unusual characters
+   private static String randomText(Random random, int length) {
+      StringBuilder text = new StringBuilder();
+      while (text.length() < length) {
+         if (random.nextInt(20) == 0) {
+            int i = random.nextInt(UNUSUAL.length() - 1);
+            // a surrogate is only ever taken whole, as a pair
+            text.append(Character.isHighSurrogate(UNUSUAL.charAt(i))
+                        ? UNUSUAL.substring(i, i + 2) : UNUSUAL.substring(i, i + 1));
+         } else {
+            text.append((char) (32 + random.nextInt(95)));
+         }
+      }
+      return text.toString();
+   }
+
+   // post: returns the count of each letter of the given text, one character at a time
+   private static long[] naiveCounts(String text) {
+      long[] counts = new long[LetterCounter.ALPHABET_NUM];
+      for (int i = 0; i < text.length(); i++) {
+         char lower = Character.toLowerCase(text.charAt(i));
+         if (lower >= 'a' && lower <= 'z') {
+            counts[lower - 'a']++;
+         }
+      }
+      return counts;
+   }
+
+   // post: checks that the given counter holds the given counts
+   private static void assertCounts(long[] expected, LetterCounter counter) {
+      LetterInventory inventory = counter.toInventory();
+      long size = 0;
+      for (int i = 0; i < expected.length; i++) {
+         assertEquals(expected[i], inventory.get((char) ('a' + i)), "letter " + (char) ('a' + i));
+         size += expected[i];
+      }
+      assertEquals(size, counter.size());
+      assertEquals(size, inventory.size());
+   }
+}
@@ -0,0 +1,138 @@
+// Tests for the length-limited codes of CanonicalCode.limitedLengths: they must
+// be complete prefix codes within the limit, cost no more than any other such
+// code (checked against every code of small alphabets), and cost what Huffman
+// coding does once the limit is loose enough.
+
+package cse143;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.nio.*;
+import java.util.*;
+import org.junit.jupiter.api.*;
+
+public class PackageMergeTest {
+   @Test
+   public void costsNoMoreThanAnyCodeWithinTheLimit() {
+      Random random = new Random(81);
+      for (int trial = 0; trial < 200; trial++) {
+         int[] count = new int[6];
+         for (int i = 0; i < count.length; i++) {
+            // skewed counts, and some characters not used at all
+            count[i] = random.nextInt(3) == 0 ? 0 : 1 << random.nextInt(12);
+         }
+         int used = 1;
+         for (int c : count) {
+            used += c > 0 ? 1 : 0;
+         }
+         int least = 32 - Integer.numberOfLeadingZeros(used - 1);
+         for (int maxLength = Math.max(least, 1); maxLength <= used; maxLength++) {
+            int[] lengths = CanonicalCode.limitedLengths(count, maxLength);
+            assertWithin(lengths, maxLength);
+            assertEquals(bestBits(count, maxLength), CanonicalCode.encodedBits(count, lengths),
+                         Arrays.toString(count) + ", " + maxLength);
+         }
+      }
+   }
+
+   @Test
+   public void staysWithinTheLimitOfLargeAlphabets() {
+      int[] count = new int[256];
+      Random random = new Random(82);
+      for (int i = 0; i < count.length; i++) {
+         // exponentially distributed counts make a deep Huffman tree
+         count[i] = (int) Math.min(Integer.MAX_VALUE / 512, Math.exp(random.nextDouble() * 25));
+      }
+      int[] unbounded = CanonicalCode.lengths(new HuffmanTree2(count, true).canonicalCode().tree(),
+                                              257);
+      int deepest = Arrays.stream(unbounded).max().getAsInt();
+      long huffman = CanonicalCode.encodedBits(count, unbounded);
+      long previous = Long.MAX_VALUE;
+      for (int maxLength = 9; maxLength <= deepest + 2; maxLength++) {
+         int[] lengths = CanonicalCode.limitedLengths(count, maxLength);
+         assertWithin(lengths, maxLength);
+         long bits = CanonicalCode.encodedBits(count, lengths);
+         assertTrue(bits >= huffman, "max length: " + maxLength);
+         assertTrue(bits <= previous, "max length: " + maxLength);
+         previous = bits;
+         if (maxLength >= deepest) {
+            assertEquals(huffman, bits);
+            assertEquals(0, HuffmanTree2.lengthLimitLoss(count, maxLength));
+         } else {
+            assertTrue(HuffmanTree2.lengthLimitLoss(count, maxLength) >= 0);
+         }
+      }
+   }
+
+   @Test
+   public void limitedTreesRoundTrip() throws IOException {
+      byte[] data = HuffmanBlockCompressorTest.skewedBytes(50_000, 83);
+      int[] count = HuffmanTree2.count(ByteBuffer.wrap(data), 8);
+      for (int maxLength : new int[] {9, 11, 15}) {
+         HuffmanTree2 tree = new HuffmanTree2(count, maxLength);
+         ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+         FastBitOutputStream output = new FastBitOutputStream(bytes);
+         tree.writeHeader(output);
+         tree.encode(ByteBuffer.wrap(data), output, 256);
+         output.close();
+         FastBitInputStream input = new FastBitInputStream(ByteBuffer.wrap(bytes.toByteArray()));
+         ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+         new HuffmanTree2(input).decode(input, decoded, 256);
+         assertArrayEquals(data, decoded.toByteArray(), "max length: " + maxLength);
+      }
+   }
+
+   @Test
+   public void refusesLimitsTooShortOrTooLong() {
+      int[] count = {5, 3, 2, 1};
+      // four characters and the pseudo-eof need codes of at least 3 bits
+      assertThrows(IllegalArgumentException.class, () -> CanonicalCode.limitedLengths(count, 2));
+      assertWithin(CanonicalCode.limitedLengths(count, 3), 3);
+      assertThrows(IllegalArgumentException.class, () -> CanonicalCode.limitedLengths(count, 63));
+      assertArrayEquals(new int[3], CanonicalCode.limitedLengths(new int[2], 0));
+   }
+
+   // post: checks that the given lengths form a complete prefix code with no code
+   //       longer than maxLength
+   private static void assertWithin(int[] lengths, int maxLength) {
+      for (int length : lengths) {
+         assertTrue(length <= maxLength, "length: " + length);
+      }
+      // the constructor refuses lengths that are not a complete prefix code
+      new CanonicalCode(lengths);
+   }
+
+   // post: returns the fewest bits any prefix code with no code longer than maxLength
+   //       needs for the given counts and the pseudo-eof, trying every such code
+   private static long bestBits(int[] count, int maxLength) {
+      List<Long> weights = new ArrayList<>();
+      for (int c : count) {
+         if (c > 0) {
+            weights.add((long) c);
+         }
+      }
+      weights.add(1L);
+      return bestBits(weights, 0, 1L << maxLength, maxLength);
+   }
+
+   // post: returns the fewest bits for the weights from the given one on, with the
+   //       given code space left (in units of 2^-maxLength), or Long.MAX_VALUE if
+   //       they don't fit
+   private static long bestBits(List<Long> weights, int next, long space, int maxLength) {
+      if (next == weights.size()) {
+         return 0;
+      }
+      long best = Long.MAX_VALUE;
+      for (int length = 1; length <= maxLength; length++) {
+         long needed = 1L << (maxLength - length);
+         if (needed <= space) {
+            long rest = bestBits(weights, next + 1, space - needed, maxLength);
+            if (rest != Long.MAX_VALUE) {
+               best = Math.min(best, rest + weights.get(next) * length);
+            }
+         }
+      }
+      return best;
+   }
+}
@@ -0,0 +1,111 @@
+// Tests for PackedInventory: every operation must agree with LetterInventory on
+// random inventories, including counts at the top of a lane, where a wrong guard
+// bit would borrow from the next letter, and inventories stored in a LongBuffer
+// must compare as the originals do.
+
+package cse143;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.*;
+import java.util.*;
+import org.junit.jupiter.api.*;
+
+public class PackedInventoryTest {
+   @Test
+   public void agreesWithLetterInventory() {
+      Random random = new Random(111);
+      for (int trial = 0; trial < 2000; trial++) {
+         LetterInventory first = randomInventory(random, trial % 4 == 0);
+         LetterInventory second = randomInventory(random, trial % 8 == 0);
+         PackedInventory packed = new PackedInventory(first);
+         PackedInventory other = new PackedInventory(second);
+         assertSameCounts(first, packed);
+         assertEquals(first.toString(), packed.toString());
+         LetterInventory difference = first.subtract(second);
+         assertEquals(difference != null, packed.contains(other), first + " - " + second);
+         if (difference != null) {
+            PackedInventory copy = new PackedInventory(packed);
+            copy.subtract(other);
+            assertSameCounts(difference, copy);
+            copy.add(other);
+            assertEquals(packed, copy);
+            assertEquals(packed.hashCode(), copy.hashCode());
+         }
+         assertEquals(first.toString().equals(second.toString()), packed.equals(other));
+      }
+   }
+
+   @Test
+   public void countsAtTheTopOfALane() {
+      for (int letter = 0; letter < PackedInventory.ALPHABET_NUM; letter++) {
+         char c = (char) ('a' + letter);
+         LetterInventory full = new LetterInventory("");
+         full.set(c, PackedInventory.MAX_COUNT);
+         LetterInventory less = new LetterInventory("");
+         less.set(c, PackedInventory.MAX_COUNT - 1);
+         // a neighbouring letter must not hide a count that is too small
+         char next = (char) ('a' + (letter + 1) % PackedInventory.ALPHABET_NUM);
+         less.set(next, PackedInventory.MAX_COUNT);
+         PackedInventory packedFull = new PackedInventory(full);
+         PackedInventory packedLess = new PackedInventory(less);
+         assertEquals(PackedInventory.MAX_COUNT, packedFull.get(c));
+         assertFalse(packedLess.contains(packedFull), "letter " + c);
+         assertFalse(packedFull.contains(packedLess), "letter " + c);
+         assertTrue(packedFull.contains(packedFull), "letter " + c);
+         full.set(c, PackedInventory.MAX_COUNT + 1);
+         assertThrows(IllegalArgumentException.class, () -> new PackedInventory(full));
+      }
+   }
+
+   @Test
+   public void storedInventoriesCompareAsTheOriginals() {
+      Random random = new Random(112);
+      List<PackedInventory> inventories = new ArrayList<>();
+      LongBuffer lanes = LongBuffer.allocate(100 * PackedInventory.LONGS);
+      for (int i = 0; i < 100; i++) {
+         PackedInventory inventory = new PackedInventory(randomInventory(random, false));
+         inventory.put(lanes, i * PackedInventory.LONGS);
+         inventories.add(inventory);
+      }
+      for (int i = 0; i < 100; i++) {
+         PackedInventory stored = new PackedInventory(lanes, i * PackedInventory.LONGS,
+                                                      inventories.get(i).size());
+         assertEquals(inventories.get(i), stored);
+         for (int j = 0; j < 100; j++) {
+            assertEquals(inventories.get(j).contains(inventories.get(i)),
+                         inventories.get(j).contains(lanes, i * PackedInventory.LONGS));
+         }
+      }
+   }
+
+   @Test
+   public void refusesNonLetters() {
+      PackedInventory inventory = new PackedInventory("Hello, World!");
+      assertEquals(3, inventory.get('L'));
+      assertEquals(10, inventory.size());
+      assertThrows(IllegalArgumentException.class, () -> inventory.get('!'));
+      assertTrue(new PackedInventory("123 ...").isEmpty());
+   }
+
+   // post: returns a random inventory of a few letters, or of many if large is true
+   private static LetterInventory randomInventory(Random random, boolean large) {
+      StringBuilder text = new StringBuilder();
+      int length = large ? random.nextInt(2000) : random.nextInt(12);
+      for (int i = 0; i < length; i++) {
+         // few distinct letters, so that one inventory often contains another
+         char letter = (char) ('a' + random.nextInt(large ? 26 : 6));
+         text.append(random.nextBoolean() ? letter : Character.toUpperCase(letter));
+      }
+      return new LetterInventory(text.toString());
+   }
+
+   // post: checks that both inventories hold the same counts
+   private static void assertSameCounts(LetterInventory expected, PackedInventory actual) {
+      for (char c = 'a'; c <= 'z'; c++) {
+         assertEquals(expected.get(c), actual.get(c), "letter " + c);
+      }
+      assertEquals(expected.size(), actual.size());
+      assertEquals(expected.isEmpty(), actual.isEmpty());
+   }
+}